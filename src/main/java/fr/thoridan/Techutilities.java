@@ -7,6 +7,9 @@ import fr.thoridan.item.ModCreativeModTabs;
 import fr.thoridan.item.ModItems;
 import fr.thoridan.menu.ModMenus;
 import fr.thoridan.network.ModNetworking;
+import fr.thoridan.printer.PrinterConfig;
+import fr.thoridan.schematic.SchematicRegistry;
+import fr.thoridan.schematic.SchematicStore;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
@@ -15,9 +18,12 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.BuildCreativeModeTabContentsEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
@@ -42,6 +48,8 @@ public class Techutilities {
         ModMenus.register(modEventBus);
         ModNetworking.registerPackets();
 
+        ModLoadingContext.get().registerConfig(ModConfig.Type.SERVER, PrinterConfig.SPEC);
+
 
         modEventBus.addListener(this::commonSetup);
 
@@ -89,6 +97,12 @@ public class Techutilities {
     public void onServerStarting(ServerStartingEvent event) {
     }
 
+    @SubscribeEvent
+    public void onServerStopped(ServerStoppedEvent event) {
+        SchematicRegistry.clear();
+        SchematicStore.clear();
+    }
+
     // You can use EventBusSubscriber to automatically register all static methods in the class annotated with @SubscribeEvent
     @Mod.EventBusSubscriber(modid = MODID, bus = Mod.EventBusSubscriber.Bus.MOD, value = Dist.CLIENT)
     public static class ClientModEvents {
@@ -164,6 +164,9 @@ public class PrinterBlock extends Block implements EntityBlock {
                 beTag.remove("PendingTargetZ");
                 beTag.remove("PendingRotation");
                 beTag.remove("PendingSchematicName");
+                beTag.remove("PendingSchematicHash");
+                beTag.remove("PlacementCursor");
+                beTag.remove("PlacementDelayTicks");
                 // Remove any other fields that you do not want to preserve
 
                 stack.addTagElement("BlockEntityTag", beTag);
@@ -173,4 +176,13 @@ public class PrinterBlock extends Block implements EntityBlock {
         super.playerWillDestroy(level, pos, state, player);
     }
 
+    @Override
+    public void onRemove(BlockState state, Level level, BlockPos pos, BlockState newState, boolean isMoving) {
+        if (!level.isClientSide && !state.is(newState.getBlock())
+                && level.getBlockEntity(pos) instanceof PrinterBlockEntity printerBE) {
+            printerBE.releaseSchematic(); // The pending placement will never run
+        }
+        super.onRemove(state, level, pos, newState, isMoving);
+    }
+
 }
\ No newline at end of file
@@ -1,23 +1,33 @@
 package fr.thoridan.block;
 
 import com.mojang.authlib.GameProfile;
+import com.mojang.logging.LogUtils;
 import fr.thoridan.Techutilities;
 import fr.thoridan.energy.CustomEnergyStorage;
 import fr.thoridan.menu.CustomItemStackHandler;
 import fr.thoridan.network.ModNetworking;
+import fr.thoridan.network.PayloadCodec;
 import fr.thoridan.network.printer.MissingItemsPacket;
 import fr.thoridan.network.printer.NotEnoughEnergyPacket;
-import fr.thoridan.network.printer.PlacementDelayUpdatePacket;
-import fr.thoridan.network.printer.UploadSchematicPacket;
+import fr.thoridan.network.printer.PlacementProgressPacket;
+import fr.thoridan.network.printer.PrinterSyncPacket;
+import fr.thoridan.printer.ChunkPreloader;
+import fr.thoridan.printer.PlacementPlanner;
+import fr.thoridan.printer.PrinterConfig;
+import fr.thoridan.printer.PrinterScheduler;
+import fr.thoridan.printer.SectionWriter;
+import fr.thoridan.schematic.CompiledSchematic;
+import fr.thoridan.schematic.SchematicCatalogue;
+import fr.thoridan.schematic.SchematicIO;
+import fr.thoridan.schematic.SchematicRegistry;
+import fr.thoridan.schematic.SchematicStore;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.core.HolderGetter;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.ListTag;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.NbtUtils;
-import net.minecraft.nbt.Tag;
 import net.minecraft.network.Connection;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.protocol.game.ClientboundBlockEntityDataPacket;
@@ -27,7 +37,6 @@ import net.minecraft.world.InteractionHand;
 import net.minecraft.world.InteractionResult;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.item.Items;
 import net.minecraft.world.level.GameType;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
@@ -45,50 +54,70 @@ import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.common.util.FakePlayerFactory;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.energy.IEnergyStorage;
-import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.items.IItemHandler;
 import net.minecraftforge.network.PacketDistributor;
+import org.slf4j.Logger;
 
 import javax.annotation.Nullable;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class PrinterBlockEntity extends BlockEntity {
+    private static final Logger LOGGER = LogUtils.getLogger();
     private UUID ownerUUID;
     private BlockPos pendingTargetPos;
     private Rotation pendingRotation;
     private String pendingSchematicName;
+    private String pendingSchematicHash; // Content the placement was charged for, the name may be re-pointed meanwhile
     private BlockPos storedTargetPos;
     private Rotation storedRotation;
     private String storedSchematicName;
 
     private int placementDelayTicks = -1;
-    private int clientPlacementDelayTicks = -1;
+    private int placementCursor = -1; // Position in the placement order of the next block to place, -1 when no placement is running
+    // Progress as last synced: what clients were told on the server, what was received on the client
+    private byte progressPhase = PlacementProgressPacket.PHASE_NONE;
+    private long progressGameTime;
+    private int progressRemaining;
+    private int progressTotal;
+    private float progressRate;
+    @Nullable
+    private AABB previewBounds; // Client only: world bounds of the ghost preview, computed by the renderer
     private double tick_per_block = 3;
     private int energy_per_block = 1000;
+    private static final int COUNTDOWN_DRIFT_TICKS = 20;
+    private static final int MIN_PLACING_DRIFT_BLOCKS = 32;
 
     // Energy
-    private final CustomEnergyStorage energyStorage = new CustomEnergyStorage(100000000, this::onEnergyChanged);
+    private final CustomEnergyStorage energyStorage = new CustomEnergyStorage(100000000, true, this::onEnergyChanged); // Flushed once per tick
     private final LazyOptional<IEnergyStorage> lazyEnergyHandler = LazyOptional.of(() -> energyStorage);
 
     // Schematic data loaded once, reused for item-check & placement
-    private CompoundTag loadedSchematicNbt;
-    private List<BlockState> loadedPalette;
-    private ListTag loadedBlocksTag;
+    private CompiledSchematic loadedSchematic;
+    private String loadedSchematicHash;
+    @Nullable
+    private SectionWriter sectionWriter; // Fast path for plain blocks, lives as long as the running placement
+    @Nullable
+    private int[] placementOrder; // Block indices sorted by the PlacementPlanner, rebuilt on demand after a restart
+    @Nullable
+    private ChunkPreloader chunkPreloader; // Tickets the chunks ahead of the cursor
+    @Nullable
+    private CompletableFuture<SchematicRegistry.Loaded> pendingReload; // Schematic being fetched again after a restart
 
     private final CustomItemStackHandler itemHandler = new CustomItemStackHandler(84) {
         @Override
         protected void onContentsChanged(int slot) {
             setChanged();
-            if (level != null && !level.isClientSide()) {
-                level.sendBlockUpdated(getBlockPos(), getBlockState(), getBlockState(), 3);
-            }
+            markSlotForSync(slot);
         }
     };
     private final LazyOptional<IItemHandler> lazyItemHandler = LazyOptional.of(() -> itemHandler);
 
+    // Parts changed since the last sync, sent at most once per tick by flushSync
+    private int syncChanges = 0;
+    private final BitSet syncSlots = new BitSet();
+
     public PrinterBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.PRINTER_BLOCK_ENTITY.get(), pos, state);
     }
@@ -109,7 +138,7 @@ public class PrinterBlockEntity extends BlockEntity {
         Techutilities.broadcastServerMessage("Placing structure...", false);
 
         // If a placement is already in progress, notify player
-        if (placementDelayTicks > 0) {
+        if (placementDelayTicks > 0 || isPlacing()) {
             Techutilities.broadcastServerMessage("A structure placement is already in progress.", false);
             return;
         }
@@ -128,8 +157,8 @@ public class PrinterBlockEntity extends BlockEntity {
         Techutilities.broadcastServerMessage("Schematic data loaded.", false);
 
         // Calculate required items
-        Map<Item, Integer> requiredItems = calculateRequiredItems(rotation, loadedPalette, loadedBlocksTag);
-        int totalBlocks = loadedBlocksTag.size();
+        Map<Item, Integer> requiredItems = loadedSchematic.getRequiredItems();
+        int totalBlocks = loadedSchematic.blockCount();
         int energyRequired = totalBlocks * energy_per_block;
 
         // Check if there's enough energy
@@ -157,205 +186,266 @@ public class PrinterBlockEntity extends BlockEntity {
         pendingTargetPos = targetPos;
         pendingRotation = rotation;
         pendingSchematicName = schematicName;
+        pendingSchematicHash = loadedSchematicHash;
+        SchematicStore.pin(getPinHolder(), pendingSchematicHash); // Keep this content until the placement ends
         placementDelayTicks = (int) (totalBlocks * tick_per_block);
         Techutilities.broadcastServerMessage("Structure placement scheduled. It will takes" + tick_per_block + " ticks", false);
         setChanged();
     }
 
     /**
-     * Actually places all blocks, called after the delay finishes in {@link #tick}.
+     * Whether the delay is over and blocks are being placed.
+     */
+    public boolean isPlacing() {
+        return placementCursor >= 0;
+    }
+
+    /**
+     * Places the next blocks of the running placement. Called by the {@link PrinterScheduler},
+     * which shares its per-tick budget between every printer.
+     *
+     * @param maxBlocks Maximum number of blocks to place.
+     * @param deadline  {@link System#nanoTime()} value after which no further block is placed.
+     * @return The number of blocks placed.
      */
-    private void performStructurePlacement() {
+    public int placeBlocks(int maxBlocks, long deadline) {
         Level level = getLevel();
-        if (!(level instanceof ServerLevel serverLevel)) return;
+        if (!(level instanceof ServerLevel serverLevel)) return 0;
 
-        Techutilities.broadcastServerMessage("Perform structure placement", false);
+        // After a restart only the cursor survives, fetch the schematic again off the server thread
+        if (loadedSchematic == null) {
+            if (pendingReload == null) {
+                reloadPendingSchematic(serverLevel);
+            }
+            return 0;
+        }
+        if (pendingTargetPos == null || pendingRotation == null) {
+            resetPlacement();
+            return 0;
+        }
 
         // Create a FakePlayer with SURVIVAL mode
         GameProfile ownerProfile = new GameProfile(ownerUUID, "[PrinterOwner]");
         FakePlayer fakePlayer = FakePlayerFactory.get(serverLevel, ownerProfile);
         fakePlayer.setGameMode(GameType.SURVIVAL);
-        Techutilities.broadcastServerMessage("Fake player created", false);
-
-        // We already have loadedSchematicNbt, loadedPalette, loadedBlocksTag
-        if (loadedSchematicNbt == null || loadedPalette == null || loadedBlocksTag == null) {
-            // If for some reason they are null, bail
-            resetPlacement();
-            return;
+        if (sectionWriter == null && PrinterConfig.DIRECT_PLACEMENT.get()) {
+            sectionWriter = new SectionWriter(serverLevel, fakePlayer);
         }
-        Techutilities.broadcastServerMessage("Schematic data loaded", false);
-
-        // Place each block
-        for (int i = 0; i < loadedBlocksTag.size(); i++) {
-            CompoundTag blockTag = loadedBlocksTag.getCompound(i);
 
-            // Original block position
-            ListTag posList = blockTag.getList("pos", Tag.TAG_INT);
-            BlockPos relPos = new BlockPos(posList.getInt(0), posList.getInt(1), posList.getInt(2));
+        if (placementOrder == null) {
+            placementOrder = PlacementPlanner.plan(loadedSchematic, pendingRotation, pendingTargetPos);
+        }
+        if (chunkPreloader == null) {
+            chunkPreloader = new ChunkPreloader(serverLevel, loadedSchematic, placementOrder, pendingRotation, pendingTargetPos);
+        }
+        chunkPreloader.update(placementCursor);
+
+        // Place the next slice of blocks
+        int start = placementCursor;
+        int end = Math.min(placementOrder.length, placementCursor + maxBlocks);
+        BlockPos.MutableBlockPos relPos = new BlockPos.MutableBlockPos();
+        while (placementCursor < end) {
+            int i = placementOrder[placementCursor];
+            BlockPos worldPos = loadedSchematic.getRotatedPos(i, pendingRotation, relPos).offset(pendingTargetPos);
+            if (!chunkPreloader.isReady(worldPos)) {
+                break; // Still loading in the background, never load it on the main thread
+            }
+            placementCursor++;
 
             // Get rotated/mirrored state
-            BlockState original = loadedPalette.get(blockTag.getInt("state"));
+            BlockState original = loadedSchematic.getState(i);
             BlockState rotated = original.mirror(Mirror.NONE).rotate(pendingRotation);
-            BlockPos worldPos = transformBlockPos(relPos, pendingRotation).offset(pendingTargetPos);
 
             // Grab tile entity nbt if any
-            CompoundTag beNbt = blockTag.contains("nbt") ? blockTag.getCompound("nbt") : null;
+            CompoundTag beNbt = loadedSchematic.getBlockEntityNbt(i);
+
+            // Plain blocks are written directly, everything else goes through a simulated placement
+            if (sectionWriter == null || beNbt != null || !SectionWriter.isPlain(rotated) || !sectionWriter.place(worldPos, rotated)) {
+                simulateBlockPlacement(fakePlayer, serverLevel, rotated, worldPos, beNbt);
+            }
 
-            // Simulate block placement
-            simulateBlockPlacement(fakePlayer, serverLevel, rotated, worldPos, beNbt);
+            if (System.nanoTime() >= deadline) break;
+        }
+        if (sectionWriter != null) {
+            sectionWriter.flush();
         }
 
-        // Done -> reset
-        resetPlacement();
+        int placed = placementCursor - start;
+        if (placementCursor >= placementOrder.length) {
+            // Done -> reset
+            Techutilities.broadcastServerMessage("Structure placement finished", false);
+            resetPlacement();
+        } else {
+            setChanged();
+        }
+        return placed;
     }
 
     /**
-     * Called each server tick. Decrements placement delay and triggers final placement.
+     * Called each server tick. Decrements placement delay, then hands the printer to the {@link PrinterScheduler}.
      */
     public static void tick(Level level, BlockPos pos, BlockState state, PrinterBlockEntity be) {
-        if (be.placementDelayTicks > 0) {
+        if (be.isPlacing()) {
+            PrinterScheduler.schedule(be); // No-op when already queued, also picks up placements resumed after a restart
+        } else if (be.placementDelayTicks > 0) {
             be.placementDelayTicks--;
             if (be.placementDelayTicks == 0) {
-                be.performStructurePlacement();
+                be.placementCursor = 0;
+                PrinterScheduler.schedule(be);
                 be.setChanged();
             }
-            if (level instanceof ServerLevel serverLevel) {
-                ModNetworking.INSTANCE.send(
-                        PacketDistributor.TRACKING_CHUNK.with(() -> serverLevel.getChunkAt(pos)),
-                        new PlacementDelayUpdatePacket(pos, be.placementDelayTicks)
-                );
-            }
+        }
+        if (level instanceof ServerLevel serverLevel) {
+            be.syncProgress(serverLevel);
+            be.energyStorage.flush();
+            be.flushSync(serverLevel);
         }
     }
 
+    /**
+     * Sends the placement progress to tracking clients, but only when the phase changes or when
+     * the clients' extrapolation is off by more than the drift tolerance. Clients interpolate in between.
+     */
+    private void syncProgress(ServerLevel serverLevel) {
+        byte phase;
+        int remaining;
+        int total;
+        if (isPlacing()) {
+            if (placementOrder == null) return; // Not started again yet after a restart
+            phase = PlacementProgressPacket.PHASE_PLACING;
+            total = placementOrder.length;
+            remaining = total - placementCursor;
+        } else if (placementDelayTicks > 0) {
+            phase = PlacementProgressPacket.PHASE_COUNTDOWN;
+            remaining = placementDelayTicks;
+            total = progressPhase == phase ? progressTotal : remaining;
+        } else {
+            phase = PlacementProgressPacket.PHASE_NONE;
+            remaining = 0;
+            total = 0;
+        }
+
+        long now = serverLevel.getGameTime();
+        float rate;
+        if (phase != progressPhase) {
+            // A countdown runs one tick per tick, the placement rate is only known once measured
+            rate = phase == PlacementProgressPacket.PHASE_COUNTDOWN ? 1.0F : 0.0F;
+        } else {
+            if (phase == PlacementProgressPacket.PHASE_NONE) return;
+            int tolerance = phase == PlacementProgressPacket.PHASE_COUNTDOWN ? COUNTDOWN_DRIFT_TICKS : Math.max(MIN_PLACING_DRIFT_BLOCKS, total / 50);
+            if (Math.abs(getProgressRemaining(now) - remaining) <= tolerance) return;
+            rate = phase == PlacementProgressPacket.PHASE_COUNTDOWN
+                    ? 1.0F
+                    : Math.max(0.0F, (progressRemaining - remaining) / (float) Math.max(1L, now - progressGameTime));
+        }
+
+        setProgress(phase, now, remaining, total, rate);
+        ModNetworking.INSTANCE.send(
+                PacketDistributor.TRACKING_CHUNK.with(() -> serverLevel.getChunkAt(worldPosition)),
+                new PlacementProgressPacket(worldPosition, phase, now, remaining, total, rate)
+        );
+    }
+
+    private void setProgress(byte phase, long gameTime, int remaining, int total, float rate) {
+        progressPhase = phase;
+        progressGameTime = gameTime;
+        progressRemaining = remaining;
+        progressTotal = total;
+        progressRate = rate;
+    }
+
+    private int getProgressRemaining(long gameTime) {
+        float extrapolated = progressRemaining - (gameTime - progressGameTime) * progressRate;
+        return Math.max(0, (int) Math.ceil(extrapolated));
+    }
+
     // -----------------------------------------------------
     //            SCHEMATIC LOADING/ITEM CHECK
     // -----------------------------------------------------
 
     /**
-     * Loads schematic data (NBT, palette, blocks) from a file in the "schematics" folder.
+     * Fetches the compiled schematic from the server-wide {@link SchematicRegistry}.
      */
     private boolean loadSchematicData(String schematicName, ServerLevel serverLevel) {
-        File folder = new File(FMLPaths.GAMEDIR.get().toFile(), "schematics");
-        File file = new File(folder, schematicName);
-        if (!file.exists()) return false; // Schematic not found
-
-        try (FileInputStream fis = new FileInputStream(file)) {
-            loadedSchematicNbt = NbtIo.readCompressed(fis);
+        HolderGetter<Block> holderGetter = serverLevel.registryAccess().lookupOrThrow(Registries.BLOCK);
+        try {
+            SchematicRegistry.Loaded loaded = SchematicRegistry.load(schematicName, holderGetter);
+            loadedSchematic = loaded.schematic();
+            loadedSchematicHash = loaded.hash();
         } catch (IOException e) {
+            if (!SchematicStore.resolve(schematicName).toFile().isFile()) {
+                SchematicCatalogue.remove(schematicName); // Gone, clients should stop offering it
+            } else {
+                LOGGER.warn("Could not load schematic '{}': {}", schematicName, e.getMessage());
+            }
             return false;
         }
-
-        // Load palette
-        HolderGetter<Block> holderGetter = serverLevel.registryAccess().lookupOrThrow(Registries.BLOCK);
-        loadedPalette = new ArrayList<>();
-        ListTag paletteTag = loadedSchematicNbt.getList("palette", Tag.TAG_COMPOUND);
-        for (int i = 0; i < paletteTag.size(); i++) {
-            CompoundTag stateTag = paletteTag.getCompound(i);
-            loadedPalette.add(NbtUtils.readBlockState(holderGetter, stateTag));
-        }
-
-        // Load blocks
-        loadedBlocksTag = loadedSchematicNbt.getList("blocks", Tag.TAG_COMPOUND);
         return true;
     }
 
-    private void uploadSchematicFromClient(String filePath, String schematicName) {
-        File file = new File(filePath);
-
-        // 1) Read raw bytes from the file
-        byte[] fileBytes;
-        try (FileInputStream fis = new FileInputStream(file)) {
-            fileBytes = fis.readAllBytes();
-        } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
+    /**
+     * Fetches the content the pending placement was charged for on the {@link SchematicIO} thread, by hash:
+     * its name may point elsewhere by now. Placement waits until the result is posted back to the server thread.
+     */
+    private void reloadPendingSchematic(ServerLevel serverLevel) {
+        String name = pendingSchematicName;
+        String hash = pendingSchematicHash;
+        if (name == null) {
+            abortReload();
             return;
         }
+        HolderGetter<Block> holderGetter = serverLevel.registryAccess().lookupOrThrow(Registries.BLOCK);
+        CompletableFuture<SchematicRegistry.Loaded> reload = SchematicIO.submit(() -> hash == null
+                ? SchematicRegistry.load(name, holderGetter) // Saved before hashes were recorded
+                : new SchematicRegistry.Loaded(hash, SchematicRegistry.getByHash(hash, name, holderGetter)));
+        pendingReload = reload;
+        reload.whenCompleteAsync((loaded, error) -> {
+            if (pendingReload != reload) return; // Placement reset or printer removed meanwhile
+            pendingReload = null;
+            if (error != null) {
+                LOGGER.warn("Could not reload schematic '{}': {}", name, error.getMessage());
+                abortReload();
+                return;
+            }
+            loadedSchematic = loaded.schematic();
+            loadedSchematicHash = loaded.hash();
+        }, serverLevel.getServer());
+    }
 
-        // 2) (Optional) Re-compress or confirm it's compressed if needed
-        //    For example, if your file is not already compressed, you might do:
-        //    fileBytes = MyCompressionUtils.compress(fileBytes);
-
-        // 3) Split into chunks (e.g. 32 KB each)
-        final int CHUNK_SIZE = 32 * 1024;
-        int totalChunks = (fileBytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE; // ceiling division
-
-        for (int i = 0; i < totalChunks; i++) {
-            int start = i * CHUNK_SIZE;
-            int end = Math.min(start + CHUNK_SIZE, fileBytes.length);
-            byte[] chunkData = Arrays.copyOfRange(fileBytes, start, end);
-
-            // 4) Send each chunk to the server
-            ModNetworking.INSTANCE.sendToServer(new UploadSchematicPacket(
-                    schematicName,  // or file.getName()
-                    i,
-                    totalChunks,
-                    chunkData
-            ));
-        }
-
-        // At this point, the server should accumulate the data
-        // in something like SchematicManager.storeChunk(...).
+    private void abortReload() {
+        Techutilities.broadcastServerMessage("Schematic data could not be reloaded, placement aborted", false);
+        resetPlacement();
     }
 
+    /**
+     * Identifies this printer's pin in the {@link SchematicStore}.
+     */
+    private String getPinHolder() {
+        return (level != null ? level.dimension().location() : "?") + "@" + worldPosition.toShortString();
+    }
 
     /**
-     * Returns how many of each item is required by rotating the block states and counting them.
+     * Releases the content pinned by the pending placement, once the printer is broken.
      */
-    private Map<Item, Integer> calculateRequiredItems(Rotation rotation, List<BlockState> palette, ListTag blocksTag) {
-        Map<Item, Integer> required = new HashMap<>();
-        for (int i = 0; i < blocksTag.size(); i++) {
-            int stateId = blocksTag.getCompound(i).getInt("state");
-            BlockState state = palette.get(stateId).rotate(rotation);
-            Item item = state.getBlock().asItem();
-            if (item != Items.AIR) {
-                required.put(item, required.getOrDefault(item, 0) + 1);
-            }
+    public void releaseSchematic() {
+        if (pendingSchematicHash != null) {
+            SchematicStore.unpin(getPinHolder());
         }
-        return required;
     }
 
     /**
-     * Checks how many items are missing in the block inventory.
+     * Checks how many items are missing in the block inventory, from the handler's count index.
      */
     private Map<Item, Integer> getMissingItems(Map<Item, Integer> requiredItems) {
-        Map<Item, Integer> inventoryItems = new HashMap<>();
-        for (int i = 0; i < itemHandler.getSlots(); i++) {
-            ItemStack stack = itemHandler.getStackInSlot(i);
-            if (!stack.isEmpty()) {
-                Item item = stack.getItem();
-                inventoryItems.put(item, inventoryItems.getOrDefault(item, 0) + stack.getCount());
-            }
-        }
-        Map<Item, Integer> missing = new HashMap<>();
-        for (Map.Entry<Item, Integer> e : requiredItems.entrySet()) {
-            int available = inventoryItems.getOrDefault(e.getKey(), 0);
-            if (available < e.getValue()) {
-                missing.put(e.getKey(), e.getValue() - available);
-            }
-        }
-        return missing;
+        return itemHandler.getMissing(requiredItems);
     }
 
     /**
-     * Removes the required items from the inventory.
+     * Removes the required items from the inventory, only visiting the slots that hold them.
      */
     private void consumeItems(Map<Item, Integer> requiredItems) {
         for (Map.Entry<Item, Integer> entry : requiredItems.entrySet()) {
-            Item item = entry.getKey();
-            int needed = entry.getValue();
-            for (int i = 0; i < itemHandler.getSlots(); i++) {
-                ItemStack slotStack = itemHandler.getStackInSlot(i);
-                if (slotStack.getItem() == item) {
-                    int toRemove = Math.min(slotStack.getCount(), needed);
-                    slotStack.shrink(toRemove);
-                    needed -= toRemove;
-                    if (slotStack.isEmpty()) {
-                        itemHandler.setStackInSlot(i, ItemStack.EMPTY);
-                    }
-                    if (needed <= 0) break;
-                }
-            }
+            itemHandler.extract(entry.getKey(), entry.getValue());
         }
     }
 
@@ -367,18 +457,6 @@ public class PrinterBlockEntity extends BlockEntity {
     //            PLACEMENT HELPERS
     // -----------------------------------------------------
 
-    /**
-     * Transforms a local block-pos by the given rotation.
-     */
-    private BlockPos transformBlockPos(BlockPos pos, Rotation rotation) {
-        return switch (rotation) {
-            case NONE -> pos;
-            case CLOCKWISE_90 -> new BlockPos(-pos.getZ(), pos.getY(), pos.getX());
-            case CLOCKWISE_180 -> new BlockPos(-pos.getX(), pos.getY(), -pos.getZ());
-            case COUNTERCLOCKWISE_90 -> new BlockPos(pos.getZ(), pos.getY(), -pos.getX());
-        };
-    }
-
     /**
      * Simulates block placement via a FakePlayer using standard useItemOn logic.
      */
@@ -404,13 +482,27 @@ public class PrinterBlockEntity extends BlockEntity {
      * Resets the block entity to 'no placement in progress'.
      */
     private void resetPlacement() {
+        if (sectionWriter != null) {
+            sectionWriter.finish(); // Light and neighbour updates of the last chunk
+        }
         pendingTargetPos = null;
         pendingRotation = null;
         pendingSchematicName = null;
-        loadedSchematicNbt = null;
-        loadedPalette = null;
-        loadedBlocksTag = null;
+        if (pendingSchematicHash != null) {
+            SchematicStore.unpin(getPinHolder());
+            pendingSchematicHash = null;
+        }
+        loadedSchematic = null;
+        loadedSchematicHash = null;
+        pendingReload = null;
+        sectionWriter = null;
+        placementOrder = null;
+        if (chunkPreloader != null) {
+            chunkPreloader.releaseAll();
+            chunkPreloader = null;
+        }
         placementDelayTicks = -1;
+        placementCursor = -1;
         setChanged();
     }
 
@@ -420,11 +512,67 @@ public class PrinterBlockEntity extends BlockEntity {
 
     private void onEnergyChanged() {
         setChanged();
+        markForSync(PrinterSyncPacket.ENERGY);
+    }
+
+    // -----------------------------------------------------
+    //           CLIENT SYNC
+    // -----------------------------------------------------
+
+    private void markForSync(int change) {
         if (level != null && !level.isClientSide()) {
-            level.sendBlockUpdated(getBlockPos(), getBlockState(), getBlockState(), 3);
+            syncChanges |= change;
         }
     }
 
+    private void markSlotForSync(int slot) {
+        if (level != null && !level.isClientSide()) {
+            syncChanges |= PrinterSyncPacket.SLOTS;
+            syncSlots.set(slot);
+        }
+    }
+
+    /**
+     * Sends what changed during this tick to tracking clients, as one delta packet.
+     * Full state is only sent through {@link #getUpdateTag} when a client starts tracking the chunk.
+     */
+    private void flushSync(ServerLevel serverLevel) {
+        if (syncChanges == 0) return;
+
+        Int2ObjectMap<ItemStack> slots = new Int2ObjectOpenHashMap<>(syncSlots.cardinality());
+        for (int slot = syncSlots.nextSetBit(0); slot >= 0; slot = syncSlots.nextSetBit(slot + 1)) {
+            slots.put(slot, itemHandler.getStackInSlot(slot).copy());
+        }
+        ModNetworking.INSTANCE.send(
+                PacketDistributor.TRACKING_CHUNK.with(() -> serverLevel.getChunkAt(worldPosition)),
+                new PrinterSyncPacket(worldPosition, syncChanges,
+                        energyStorage.getEnergyStored(), energyStorage.getReceivedLastTick(), energyStorage.getExtractedLastTick(), slots,
+                        storedTargetPos, storedRotation, storedSchematicName)
+        );
+        syncChanges = 0;
+        syncSlots.clear();
+    }
+
+    public void setClientEnergy(int energy, int receivedPerTick, int extractedPerTick) {
+        energyStorage.setEnergy(energy);
+        energyStorage.setLastTickStats(receivedPerTick, extractedPerTick);
+    }
+
+    public void setClientSlots(Int2ObjectMap<ItemStack> slots) {
+        for (Int2ObjectMap.Entry<ItemStack> entry : slots.int2ObjectEntrySet()) {
+            if (entry.getIntKey() < itemHandler.getSlots()) {
+                itemHandler.setStackInSlot(entry.getIntKey(), entry.getValue());
+            }
+        }
+    }
+
+    public void setClientConfig(@Nullable BlockPos targetPos, @Nullable Rotation rotation, @Nullable String schematicName) {
+        storedTargetPos = targetPos;
+        storedRotation = rotation;
+        storedSchematicName = schematicName;
+        previewBounds = null; // Recomputed by the renderer
+    }
+
     // -----------------------------------------------------
     //              SAVE / LOAD
     // -----------------------------------------------------
@@ -451,8 +599,10 @@ public class PrinterBlockEntity extends BlockEntity {
         }
         if (pendingRotation != null) tag.putString("PendingRotation", pendingRotation.name());
         if (pendingSchematicName != null) tag.putString("PendingSchematicName", pendingSchematicName);
+        if (pendingSchematicHash != null) tag.putString("PendingSchematicHash", pendingSchematicHash);
 
         tag.putInt("PlacementDelayTicks", placementDelayTicks);
+        tag.putInt("PlacementCursor", placementCursor);
         if (ownerUUID != null) tag.putUUID("OwnerUUID", ownerUUID);
         tag.putInt("Energy", energyStorage.getEnergyStored());
     }
@@ -460,20 +610,33 @@ public class PrinterBlockEntity extends BlockEntity {
     @Override
     public void load(CompoundTag tag) {
         super.load(tag);
-        itemHandler.deserializeNBT(tag.getCompound("inventory"));
+        if (tag.contains("InventoryPayload")) {
+            CompoundTag inventory = PayloadCodec.decode(tag.getByteArray("InventoryPayload")).readNbt();
+            itemHandler.deserializeNBT(inventory != null ? inventory : new CompoundTag());
+        } else {
+            itemHandler.deserializeNBT(tag.getCompound("inventory"));
+        }
 
         if (tag.contains("TargetX")) {
             storedTargetPos = new BlockPos(tag.getInt("TargetX"), tag.getInt("TargetY"), tag.getInt("TargetZ"));
         }
         storedRotation = tag.contains("Rotation") ? Rotation.valueOf(tag.getString("Rotation")) : null;
         storedSchematicName = tag.contains("SchematicName") ? tag.getString("SchematicName") : null;
+        previewBounds = null; // Target, rotation or schematic may have changed
 
         if (tag.contains("PendingTargetX")) {
             pendingTargetPos = new BlockPos(tag.getInt("PendingTargetX"), tag.getInt("PendingTargetY"), tag.getInt("PendingTargetZ"));
         }
         pendingRotation = tag.contains("PendingRotation") ? Rotation.valueOf(tag.getString("PendingRotation")) : null;
         pendingSchematicName = tag.contains("PendingSchematicName") ? tag.getString("PendingSchematicName") : null;
+        pendingSchematicHash = tag.contains("PendingSchematicHash") ? tag.getString("PendingSchematicHash") : null;
         placementDelayTicks = tag.contains("PlacementDelayTicks") ? tag.getInt("PlacementDelayTicks") : -1;
+        placementCursor = tag.contains("PlacementCursor") ? tag.getInt("PlacementCursor") : -1;
+
+        if (tag.contains("ProgressPhase")) {
+            setProgress(tag.getByte("ProgressPhase"), tag.getLong("ProgressGameTime"), tag.getInt("ProgressRemaining"),
+                    tag.getInt("ProgressTotal"), tag.getFloat("ProgressRate"));
+        }
 
         if (tag.hasUUID("OwnerUUID")) ownerUUID = tag.getUUID("OwnerUUID");
         if (tag.contains("Energy")) energyStorage.setEnergy(tag.getInt("Energy"));
@@ -491,6 +654,8 @@ public class PrinterBlockEntity extends BlockEntity {
 
     public int getEnergyStored() { return energyStorage.getEnergyStored(); }
     public int getMaxEnergyStored() { return energyStorage.getMaxEnergyStored(); }
+    public int getEnergyReceivedPerTick() { return energyStorage.getReceivedLastTick(); }
+    public int getEnergyExtractedPerTick() { return energyStorage.getExtractedLastTick(); }
 
     public BlockPos getStoredTargetPos() { return storedTargetPos; }
     public Rotation getStoredRotation() { return storedRotation; }
@@ -498,30 +663,44 @@ public class PrinterBlockEntity extends BlockEntity {
     public void setRotation(Rotation rotation) {
         this.storedRotation = rotation;
         setChanged();
-        if (level != null && !level.isClientSide()) {
-            level.sendBlockUpdated(getBlockPos(), getBlockState(), getBlockState(), 3);
-        }
+        markForSync(PrinterSyncPacket.CONFIG);
     }
     public void setSchematicName(String name) {
         this.storedSchematicName = name;
         setChanged();
-        if (level != null && !level.isClientSide()) {
-            level.sendBlockUpdated(getBlockPos(), getBlockState(), getBlockState(), 3);
-        }
+        markForSync(PrinterSyncPacket.CONFIG);
     }
     public void setTargetPos(BlockPos pos) {
         this.storedTargetPos = pos;
         setChanged();
-        if (level != null && !level.isClientSide()) {
-            level.sendBlockUpdated(getBlockPos(), getBlockState(), getBlockState(), 3);
-        }
+        markForSync(PrinterSyncPacket.CONFIG);
+    }
+
+    public void setClientProgress(byte phase, long gameTime, int remaining, int total, float rate) {
+        setProgress(phase, gameTime, remaining, total, rate);
+    }
+    public byte getClientProgressPhase() { return progressPhase; }
+    public int getClientProgressTotal() { return progressTotal; }
+    /**
+     * Ticks (countdown) or blocks (placing) left, extrapolated from the last sync.
+     */
+    public int getClientProgressRemaining() {
+        return level != null ? getProgressRemaining(level.getGameTime()) : progressRemaining;
     }
 
-    public void setClientPlacementDelayTicks(int ticks) { this.clientPlacementDelayTicks = ticks; }
-    public int getClientPlacementDelayTicks() { return clientPlacementDelayTicks; }
+    public void setPreviewBounds(@Nullable AABB bounds) { this.previewBounds = bounds; }
 
+    /**
+     * Until the renderer has measured the ghost preview, the bounds are unknown and the
+     * block entity must not be culled, otherwise the preview would never get measured.
+     */
     @Override
-    public AABB getRenderBoundingBox() { return INFINITE_EXTENT_AABB; }
+    public AABB getRenderBoundingBox() {
+        if (storedSchematicName == null || storedTargetPos == null) {
+            return new AABB(getBlockPos());
+        }
+        return previewBounds != null ? previewBounds : INFINITE_EXTENT_AABB;
+    }
 
     // -----------------------------------------------------
     //            CAPABILITIES & REMOVAL
@@ -539,12 +718,22 @@ public class PrinterBlockEntity extends BlockEntity {
         super.setRemoved();
         lazyItemHandler.invalidate();
         lazyEnergyHandler.invalidate();
+        if (sectionWriter != null) {
+            sectionWriter.finish(); // Pending light and neighbour updates, while the tickets still hold the chunks
+            sectionWriter = null;
+        }
+        if (chunkPreloader != null) {
+            chunkPreloader.releaseAll(); // Tickets would otherwise keep the build area loaded forever
+            chunkPreloader = null;
+        }
+        pendingReload = null; // Its result is dropped
         // Cancel any pending placement if the block is removed
         if (placementDelayTicks > 0) {
             placementDelayTicks = -1;
             pendingTargetPos = null;
             pendingRotation = null;
             pendingSchematicName = null;
+            pendingSchematicHash = null; // Its pin is released by releaseSchematic when the block is broken
             setChanged();
         }
     }
@@ -554,6 +743,16 @@ public class PrinterBlockEntity extends BlockEntity {
     public CompoundTag getUpdateTag() {
         CompoundTag tag = new CompoundTag();
         saveAdditional(tag);
+        // The inventory is most of the tag, send it through the payload codec
+        CompoundTag inventory = (CompoundTag) tag.get("inventory");
+        tag.remove("inventory");
+        tag.putByteArray("InventoryPayload", ModNetworking.PAYLOAD_CODEC.encode(buf -> buf.writeNbt(inventory)));
+        // Progress is only synced, never saved
+        tag.putByte("ProgressPhase", progressPhase);
+        tag.putLong("ProgressGameTime", progressGameTime);
+        tag.putInt("ProgressRemaining", progressRemaining);
+        tag.putInt("ProgressTotal", progressTotal);
+        tag.putFloat("ProgressRate", progressRate);
         return tag;
     }
     @Override
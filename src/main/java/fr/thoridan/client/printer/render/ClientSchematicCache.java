@@ -0,0 +1,176 @@
+package fr.thoridan.client.printer.render;
+
+import com.mojang.logging.LogUtils;
+import fr.thoridan.schematic.CompiledSchematic;
+import net.minecraft.client.Minecraft;
+import net.minecraft.core.registries.BuiltInRegistries;
+import org.slf4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Client-side cache of parsed schematics used by the ghost preview.
+ * Entries are keyed by file name and invalidated when the file's mtime or size changes.
+ * The cache is bounded by total block count and evicts the least recently used schematic first.
+ * Files are decoded on {@link PreviewWorkers} so the render thread never waits on disk I/O.
+ * Only the local schematics folder is read: a schematic picked from the server catalogue with no local copy has no preview.
+ */
+public final class ClientSchematicCache {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int MAX_ENTRIES = 16;
+    private static final int MAX_TOTAL_BLOCKS = 250_000;
+    private static final long STAT_INTERVAL_MS = 1000; // How often a cached file is re-checked on disk
+
+    private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75F, true);
+    private static final Set<String> LOADING = new HashSet<>();
+    private static final Map<String, Long> FAILED = new HashMap<>(); // name -> mtime of the file that failed to decode
+    private static int totalBlocks = 0;
+
+    private ClientSchematicCache() {}
+
+    /**
+     * A compiled schematic plus the file metadata it was decoded from.
+     */
+    public static final class Entry {
+        private final CompiledSchematic schematic;
+        private final long lastModified;
+        private final long length;
+        private long lastStatTime;
+
+        private Entry(CompiledSchematic schematic, long lastModified, long length, long now) {
+            this.schematic = schematic;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.lastStatTime = now;
+        }
+
+        public CompiledSchematic schematic() { return schematic; }
+    }
+
+    /**
+     * Returns the compiled schematic. Never blocks: when the schematic is not cached,
+     * or has changed on disk since it was cached, a decode is started on a worker thread and
+     * null is returned until it finishes.
+     *
+     * @param schematicName The name of the schematic file.
+     * @return The decoded entry, or null if it is still loading, missing or unreadable.
+     */
+    @Nullable
+    public static synchronized Entry get(String schematicName) {
+        File schematicFile = getSchematicFile(schematicName);
+        long now = System.currentTimeMillis();
+
+        Entry cached = ENTRIES.get(schematicName);
+        if (cached != null) {
+            if (now - cached.lastStatTime < STAT_INTERVAL_MS) {
+                return cached;
+            }
+            cached.lastStatTime = now;
+            if (schematicFile.exists() && schematicFile.lastModified() == cached.lastModified && schematicFile.length() == cached.length) {
+                return cached;
+            }
+            // File changed or disappeared -> drop the stale entry
+            remove(schematicName);
+        }
+
+        if (!LOADING.contains(schematicName) && schematicFile.exists()) {
+            Long failedVersion = FAILED.get(schematicName);
+            if (failedVersion == null || failedVersion != schematicFile.lastModified()) {
+                startLoad(schematicName, schematicFile);
+            }
+        }
+        return null;
+    }
+
+    private static void startLoad(String schematicName, File schematicFile) {
+        try {
+            PreviewWorkers.EXECUTOR.execute(() -> {
+                long lastModified = schematicFile.lastModified();
+                long length = schematicFile.length();
+                CompiledSchematic schematic = null;
+                try {
+                    schematic = loadSchematic(schematicFile);
+                } finally {
+                    finishLoad(schematicName, schematic, lastModified, length);
+                }
+            });
+            LOADING.add(schematicName);
+        } catch (RejectedExecutionException e) {
+            // Workers are saturated, the next frame will try again
+        }
+    }
+
+    private static synchronized void finishLoad(String schematicName, @Nullable CompiledSchematic schematic, long lastModified, long length) {
+        LOADING.remove(schematicName);
+        if (schematic == null) {
+            FAILED.put(schematicName, lastModified); // Don't retry until the file changes
+            return;
+        }
+        FAILED.remove(schematicName);
+        remove(schematicName);
+        ENTRIES.put(schematicName, new Entry(schematic, lastModified, length, System.currentTimeMillis()));
+        totalBlocks += schematic.blockCount();
+        evictIfNeeded(schematicName);
+    }
+
+    /**
+     * Drops a single schematic from the cache.
+     */
+    public static synchronized void invalidate(String schematicName) {
+        remove(schematicName);
+    }
+
+    /**
+     * Drops every cached schematic.
+     */
+    public static synchronized void clear() {
+        ENTRIES.clear();
+        FAILED.clear();
+        totalBlocks = 0;
+    }
+
+    private static void remove(String schematicName) {
+        Entry removed = ENTRIES.remove(schematicName);
+        if (removed != null) {
+            totalBlocks -= removed.schematic.blockCount();
+        }
+    }
+
+    private static void evictIfNeeded(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = ENTRIES.entrySet().iterator();
+        while ((ENTRIES.size() > MAX_ENTRIES || totalBlocks > MAX_TOTAL_BLOCKS) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue; // Never evict the entry we just loaded
+            totalBlocks -= eldest.getValue().schematic.blockCount();
+            it.remove();
+        }
+    }
+
+    private static File getSchematicFile(String schematicName) {
+        File schematicsFolder = new File(Minecraft.getInstance().gameDirectory, "schematics");
+        return new File(schematicsFolder, schematicName);
+    }
+
+    /**
+     * Loads and compiles the schematic file.
+     *
+     * @param schematicFile The schematic file.
+     * @return The compiled schematic or null if loading fails.
+     */
+    @Nullable
+    private static CompiledSchematic loadSchematic(File schematicFile) {
+        try {
+            // Unknown blocks become air, unknown properties are ignored
+            CompiledSchematic schematic = CompiledSchematic.load(schematicFile, BuiltInRegistries.BLOCK.asLookup());
+            LOGGER.debug("Loaded {} blocks from schematic '{}'.", schematic.blockCount(), schematicFile.getName());
+            return schematic;
+        } catch (IOException e) {
+            LOGGER.debug("Failed to read schematic file {}: {}", schematicFile, e.getMessage());
+            return null;
+        }
+    }
+}
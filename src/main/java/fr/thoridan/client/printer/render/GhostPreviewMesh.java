@@ -0,0 +1,295 @@
+package fr.thoridan.client.printer.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexBuffer;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import fr.thoridan.schematic.CompiledSchematic;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntListIterator;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.GameRenderer;
+import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.client.renderer.LightTexture;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.block.BlockRenderDispatcher;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.client.renderer.texture.OverlayTexture;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Rotation;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.client.model.data.ModelData;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A ghost structure tessellated once into GPU vertex buffers, split into 16x16x16 sections
+ * so that off-screen parts can be culled and distant parts drawn as outlines.
+ * Vertices are in rotated structure-local coordinates, so the same mesh can be drawn at any target position.
+ * Tessellation runs on a {@link PreviewWorkers} thread; uploading, drawing and closing must happen on the render thread.
+ */
+public class GhostPreviewMesh implements AutoCloseable {
+    // Tessellation buffers, one per in-flight build, reused to avoid allocating native memory per mesh
+    private static final int MAX_IN_FLIGHT_BUILDS = PreviewWorkers.THREADS;
+    private static final BlockingQueue<BufferBuilder> BUILDERS = new ArrayBlockingQueue<>(MAX_IN_FLIGHT_BUILDS);
+    private static final Semaphore BUILDER_PERMITS = new Semaphore(MAX_IN_FLIGHT_BUILDS);
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final long MODEL_SEED = 42L; // Same seed ModelRenderer uses, keeps random model variants stable
+
+    private static final int SECTION_SHIFT = 4; // 16x16x16 sub-meshes
+    private static final double LOD_DISTANCE = 64.0D;
+
+    private final List<Section> sections;
+    private final AABB bounds;
+
+    private GhostPreviewMesh(List<Section> sections, AABB bounds) {
+        this.sections = sections;
+        this.bounds = bounds;
+    }
+
+    /**
+     * One 16x16x16 slice of the structure with its own vertex buffer.
+     */
+    private record Section(AABB bounds, @Nullable VertexBuffer vertexBuffer) {}
+
+    /**
+     * Tessellated vertices waiting to be uploaded on the render thread.
+     */
+    private record PendingSection(AABB bounds, @Nullable BufferBuilder.RenderedBuffer rendered) {}
+
+    /**
+     * Tessellates the rotated structure on a worker thread, then uploads one vertex buffer
+     * per 16x16x16 section on the render thread.
+     * Faces touching a full, opaque ghost cube are culled since they can never be seen.
+     *
+     * @param schematic The schematic to tessellate.
+     * @param rotation  Rotation to apply to the structure.
+     * @param alpha     Alpha baked into every vertex.
+     * @return A future completed on the render thread with the uploaded mesh.
+     */
+    public static CompletableFuture<GhostPreviewMesh> buildAsync(CompiledSchematic schematic, Rotation rotation, float alpha) {
+        return CompletableFuture.supplyAsync(() -> {
+            BufferBuilder builder = acquireBuilder();
+            try {
+                return tessellate(builder, schematic, rotation, alpha);
+            } catch (RuntimeException e) {
+                releaseBuilder(builder);
+                throw e;
+            }
+        }, PreviewWorkers.EXECUTOR).thenApplyAsync(GhostPreviewMesh::uploadMesh, Minecraft.getInstance());
+    }
+
+    private static BufferBuilder acquireBuilder() {
+        BUILDER_PERMITS.acquireUninterruptibly();
+        BufferBuilder builder = BUILDERS.poll();
+        return builder != null ? builder : new BufferBuilder(RenderType.translucent().bufferSize());
+    }
+
+    private static void releaseBuilder(BufferBuilder builder) {
+        builder.discard();
+        BUILDERS.offer(builder);
+        BUILDER_PERMITS.release();
+    }
+
+    /**
+     * Vertices of a whole structure held in one builder until {@link #uploadMesh} copies them to the GPU.
+     */
+    private record PendingMesh(BufferBuilder builder, List<PendingSection> sections, AABB bounds) {}
+
+    private static PendingMesh tessellate(BufferBuilder builder, CompiledSchematic schematic, Rotation rotation, float alpha) {
+        BlockRenderDispatcher blockRenderer = Minecraft.getInstance().getBlockRenderer();
+
+        // First pass: rotate every block, group it by section and record which positions hold a full, opaque cube
+        int count = schematic.blockCount();
+        long[] positions = new long[count];
+        BlockState[] states = new BlockState[count];
+        LongOpenHashSet fullCubes = new LongOpenHashSet(count);
+        Long2ObjectLinkedOpenHashMap<IntArrayList> sectionBlocks = new Long2ObjectLinkedOpenHashMap<>();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        BlockPos.MutableBlockPos rotatedPos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < count; i++) {
+            BlockState rotatedState = schematic.getState(i).rotate(rotation);
+            schematic.getRotatedPos(i, rotation, rotatedPos);
+            long pos = rotatedPos.asLong();
+            positions[i] = pos;
+            states[i] = rotatedState;
+            if (rotatedState.isAir()) {
+                continue;
+            }
+            if (rotatedState.isSolidRender(EmptyBlockGetter.INSTANCE, BlockPos.ZERO)) {
+                fullCubes.add(pos);
+            }
+
+            long sectionKey = SectionPos.asLong(rotatedPos.getX() >> SECTION_SHIFT, rotatedPos.getY() >> SECTION_SHIFT, rotatedPos.getZ() >> SECTION_SHIFT);
+            sectionBlocks.computeIfAbsent(sectionKey, k -> new IntArrayList()).add(i);
+
+            minX = Math.min(minX, rotatedPos.getX());
+            minY = Math.min(minY, rotatedPos.getY());
+            minZ = Math.min(minZ, rotatedPos.getZ());
+            maxX = Math.max(maxX, rotatedPos.getX());
+            maxY = Math.max(maxY, rotatedPos.getY());
+            maxZ = Math.max(maxZ, rotatedPos.getZ());
+        }
+
+        if (sectionBlocks.isEmpty()) {
+            return new PendingMesh(builder, List.of(), new AABB(BlockPos.ZERO));
+        }
+        AABB bounds = new AABB(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1);
+
+        // Second pass: tessellate each section, skipping faces that touch a full-cube ghost neighbour.
+        // Every section stays pending in the same builder until the upload on the render thread.
+        List<PendingSection> sections = new ArrayList<>(sectionBlocks.size());
+        PoseStack poseStack = new PoseStack();
+        RandomSource random = RandomSource.create();
+        for (Long2ObjectMap.Entry<IntArrayList> sectionEntry : sectionBlocks.long2ObjectEntrySet()) {
+            long sectionKey = sectionEntry.getLongKey();
+            int sx = SectionPos.x(sectionKey) << SECTION_SHIFT;
+            int sy = SectionPos.y(sectionKey) << SECTION_SHIFT;
+            int sz = SectionPos.z(sectionKey) << SECTION_SHIFT;
+            AABB sectionBounds = new AABB(sx, sy, sz, sx + 16, sy + 16, sz + 16).intersect(bounds);
+
+            builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLOCK);
+            VertexConsumer consumer = alpha < 1.0F ? new AlphaAdjustingVertexConsumer(builder, alpha) : builder;
+            IntListIterator it = sectionEntry.getValue().iterator();
+            while (it.hasNext()) {
+                int i = it.nextInt();
+                BlockState state = states[i];
+                long pos = positions[i];
+                BakedModel model = blockRenderer.getBlockModel(state);
+
+                poseStack.pushPose();
+                poseStack.translate(BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
+                for (Direction direction : DIRECTIONS) {
+                    if (fullCubes.contains(BlockPos.offset(pos, direction))) {
+                        continue; // Hidden behind a neighbouring full cube
+                    }
+                    random.setSeed(MODEL_SEED);
+                    putQuads(consumer, poseStack.last(), model.getQuads(state, direction, random, ModelData.EMPTY, null));
+                }
+                random.setSeed(MODEL_SEED);
+                putQuads(consumer, poseStack.last(), model.getQuads(state, null, random, ModelData.EMPTY, null));
+                poseStack.popPose();
+            }
+
+            sections.add(new PendingSection(sectionBounds, builder.endOrDiscardIfEmpty()));
+        }
+
+        return new PendingMesh(builder, sections, bounds);
+    }
+
+    private static GhostPreviewMesh uploadMesh(PendingMesh pending) {
+        RenderSystem.assertOnRenderThread();
+        try {
+            List<Section> sections = new ArrayList<>(pending.sections().size());
+            for (PendingSection section : pending.sections()) {
+                sections.add(new Section(section.bounds(), upload(section.rendered())));
+            }
+            return new GhostPreviewMesh(sections, pending.bounds());
+        } finally {
+            releaseBuilder(pending.builder());
+        }
+    }
+
+    @Nullable
+    private static VertexBuffer upload(@Nullable BufferBuilder.RenderedBuffer rendered) {
+        if (rendered == null) {
+            return null;
+        }
+        VertexBuffer vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+        vertexBuffer.bind();
+        vertexBuffer.upload(rendered); // Also releases the rendered buffer
+        VertexBuffer.unbind();
+        return vertexBuffer;
+    }
+
+    /**
+     * Returns the bounds of the rotated structure, in structure-local coordinates.
+     */
+    public AABB getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Draws the sections visible from the camera. Near sections are drawn from their vertex buffer,
+     * sections farther than {@link #LOD_DISTANCE} are drawn as a cheap outline instead.
+     *
+     * @param poseStack    Pose positioned at the structure origin.
+     * @param origin       World position of the structure origin.
+     * @param frustum      The camera frustum, or null to skip culling.
+     * @param cameraPos    World position of the camera.
+     * @param bufferSource Buffer source used for the outline LOD.
+     */
+    public void draw(PoseStack poseStack, BlockPos origin, @Nullable Frustum frustum, Vec3 cameraPos, MultiBufferSource bufferSource) {
+        RenderType renderType = RenderType.translucent();
+        boolean renderStateSet = false;
+        VertexConsumer lines = null;
+
+        for (Section section : sections) {
+            AABB worldBounds = section.bounds().move(origin.getX(), origin.getY(), origin.getZ());
+            if (frustum != null && !frustum.isVisible(worldBounds)) {
+                continue;
+            }
+
+            if (worldBounds.getCenter().distanceToSqr(cameraPos) > LOD_DISTANCE * LOD_DISTANCE) {
+                if (lines == null) {
+                    lines = bufferSource.getBuffer(RenderType.lines());
+                }
+                AABB box = section.bounds();
+                LevelRenderer.renderLineBox(poseStack, lines, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, 0.6F, 0.8F, 1.0F, 0.5F);
+                continue;
+            }
+
+            if (section.vertexBuffer() == null) {
+                continue;
+            }
+            if (!renderStateSet) {
+                renderType.setupRenderState();
+                renderStateSet = true;
+            }
+            section.vertexBuffer().bind();
+            section.vertexBuffer().drawWithShader(poseStack.last().pose(), RenderSystem.getProjectionMatrix(), GameRenderer.getRendertypeTranslucentShader());
+        }
+
+        if (renderStateSet) {
+            VertexBuffer.unbind();
+            renderType.clearRenderState();
+        }
+    }
+
+    private static void putQuads(VertexConsumer consumer, PoseStack.Pose pose, List<BakedQuad> quads) {
+        for (BakedQuad quad : quads) {
+            consumer.putBulkData(pose, quad, 1.0F, 1.0F, 1.0F, LightTexture.FULL_BRIGHT, OverlayTexture.NO_OVERLAY);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Section section : sections) {
+            if (section.vertexBuffer() != null) {
+                section.vertexBuffer().close();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package fr.thoridan.client.printer.render;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool for decoding schematics and tessellating ghost previews off the render thread.
+ * When the queue is full, submissions are rejected and the caller simply retries on a later frame.
+ */
+public final class PreviewWorkers {
+    public static final int THREADS = 2;
+    private static final int QUEUE_SIZE = 32;
+
+    public static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS,
+            30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            new WorkerThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy()
+    );
+
+    static {
+        ((ThreadPoolExecutor) EXECUTOR).allowCoreThreadTimeOut(true);
+    }
+
+    private PreviewWorkers() {}
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Printer Preview Worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
@@ -1,45 +1,50 @@
 package fr.thoridan.client.printer.render;
 
-import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.mojang.logging.LogUtils;
 import fr.thoridan.block.PrinterBlockEntity;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.RenderType;
-import net.minecraft.client.renderer.block.BlockRenderDispatcher;
 import net.minecraft.client.renderer.blockentity.BlockEntityRenderer;
+import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.client.renderer.blockentity.BlockEntityRendererProvider;
-import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.core.BlockPos;
-import net.minecraft.nbt.Tag;
 import net.minecraft.network.chat.Component;
-import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.ListTag;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.Mirror;
 import net.minecraft.world.level.block.Rotation;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.block.state.properties.Property;
-import net.minecraft.world.level.levelgen.structure.templatesystem.StructurePlaceSettings;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.minecraft.client.renderer.MultiBufferSource;
-import net.minecraft.client.renderer.texture.OverlayTexture;
-import net.minecraft.world.level.levelgen.structure.templatesystem.StructureTemplate;
-import net.minecraftforge.registries.ForgeRegistries;
+
+import org.slf4j.Logger;
 
 import javax.annotation.Nullable;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 public class PrinterBlockEntityRenderer implements BlockEntityRenderer<PrinterBlockEntity> {
 
     private long lastMessageTime = 0;
     private static final long MESSAGE_COOLDOWN_MS = 1000; // Adjust as needed
     private static final boolean DEBUG = false;
+    private static final int MAX_CACHED_MESHES = 8;
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    // Baked meshes keyed by "schematicName|rotation", least recently used first
+    private static final Map<String, CachedMesh> MESHES = new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedMesh> eldest) {
+            if (size() > MAX_CACHED_MESHES) {
+                eldest.getValue().mesh().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Builds in flight, keyed like MESHES, with the schematic version being built
+    private static final Map<String, ClientSchematicCache.Entry> PENDING = new HashMap<>();
+    // Schematic versions whose build failed, keyed like MESHES; not retried until the cache entry changes
+    private static final Map<String, ClientSchematicCache.Entry> FAILED = new HashMap<>();
 
     public PrinterBlockEntityRenderer(BlockEntityRendererProvider.Context context) {
         // Constructor can be empty or store context if needed
@@ -56,9 +61,11 @@ public class PrinterBlockEntityRenderer implements BlockEntityRenderer<PrinterBl
             return;
         }
 
-        // Load the schematic blocks
-        List<StructureTemplate.StructureBlockInfo> blockInfos = loadStructureBlocks(blockEntity.getStoredSchematicName());
-        if (blockInfos == null || blockInfos.isEmpty()) {
+        // Fetch the schematic blocks (decoded once in the background, shared across frames and printers)
+        String schematicName = blockEntity.getStoredSchematicName();
+        ClientSchematicCache.Entry schematic = ClientSchematicCache.get(schematicName);
+        if (schematic == null || schematic.schematic().blockCount() == 0) {
+            sendDebugMessage("Schematic not loaded (yet): " + schematicName);
             return;
         }
 
@@ -67,156 +74,83 @@ public class PrinterBlockEntityRenderer implements BlockEntityRenderer<PrinterBl
         Rotation rotation = blockEntity.getStoredRotation() != null ? blockEntity.getStoredRotation() : Rotation.NONE;
 
         // Render the structure
-        renderStructure(blockInfos, blockEntity.getBlockPos(), targetPos, rotation, poseStack, bufferSource, combinedLight);
+        GhostPreviewMesh mesh = getOrBuildMesh(schematicName, schematic, rotation);
+        if (mesh == null) {
+            return; // Still building, draw nothing for now
+        }
+
+        // Publish the real world bounds so the block entity gets frustum-culled as a whole
+        AABB structureBounds = mesh.getBounds().move(targetPos.getX(), targetPos.getY(), targetPos.getZ());
+        blockEntity.setPreviewBounds(structureBounds.minmax(new AABB(blockEntity.getBlockPos())));
+
+        renderStructure(mesh, blockEntity.getBlockPos(), targetPos, poseStack, bufferSource);
     }
 
     /**
-     * Loads the schematic file and extracts the list of StructureBlockInfo.
+     * Returns the baked mesh for a (schematic, rotation) pair. A missing or outdated mesh is rebuilt
+     * asynchronously; meanwhile the previous mesh (if any) keeps being drawn. A version that failed to
+     * build is not tried again.
      *
-     * @param schematicName The name of the schematic file.
-     * @return A list of StructureBlockInfo or null if loading fails.
+     * @return The mesh to draw, or null if nothing has been baked yet.
      */
     @Nullable
-    private List<StructureTemplate.StructureBlockInfo> loadStructureBlocks(String schematicName) {
-        // Get the schematics folder in the game directory
-        File schematicsFolder = new File(Minecraft.getInstance().gameDirectory, "schematics");
-        File schematicFile = new File(schematicsFolder, schematicName);
-
-        if (!schematicFile.exists()) {
-            sendDebugMessage("Schematic file does not exist: " + schematicFile.getAbsolutePath());
-            return null;
-        }
-
-        CompoundTag nbtData;
-        try (FileInputStream fis = new FileInputStream(schematicFile)) {
-            // Read the NBT data from the file
-            nbtData = NbtIo.readCompressed(fis);
-        } catch (IOException e) {
-            sendDebugMessage("Failed to read schematic file: " + e.getMessage());
-            return null;
-        }
-
-        // Extract the palette
-        ListTag paletteList = nbtData.getList("palette", 10); // 10 for CompoundTag
-        List<BlockState> palette = new ArrayList<>();
-        for (int i = 0; i < paletteList.size(); i++) {
-            CompoundTag blockStateTag = paletteList.getCompound(i);
-            String blockName = blockStateTag.getString("Name");
-            Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockName));
-            if (block == null) {
-                sendDebugMessage("Unknown block: " + blockName + ". Defaulting to AIR.");
-                block = Blocks.AIR;
-            }
-            BlockState state = block.defaultBlockState();
-
-            // Handle block properties if any
-            if (blockStateTag.contains("Properties", 10)) { // 10 for CompoundTag
-                CompoundTag properties = blockStateTag.getCompound("Properties");
-                for (String key : properties.getAllKeys()) {
-                    String value = properties.getString(key);
-                    Property<?> property = getProperty(state, key);
-                    if (property != null) {
-                        // Use the helper method to set the property
-                        state = setBlockStateProperty(state, property, value, blockName);
-                    } else {
-                        sendDebugMessage("Property '" + key + "' not found for block '" + blockName + "'.");
-                    }
-                }
-            }
-
-            palette.add(state);
+    private static GhostPreviewMesh getOrBuildMesh(String schematicName, ClientSchematicCache.Entry schematic, Rotation rotation) {
+        String key = schematicName + "|" + rotation.name();
+        CachedMesh cached = MESHES.get(key);
+        if (cached != null && cached.source() == schematic) {
+            return cached.mesh();
         }
 
-        // Extract the blocks
-        ListTag blocksList = nbtData.getList("blocks", 10); // 10 for CompoundTag
-        List<StructureTemplate.StructureBlockInfo> blockInfos = new ArrayList<>();
-
-        for (int i = 0; i < blocksList.size(); i++) {
-            CompoundTag blockTag = blocksList.getCompound(i);
-
-            // Extract position
-            ListTag posList = blockTag.getList("pos", Tag.TAG_INT);
-            int x = posList.getInt(0);
-            int y = posList.getInt(1);
-            int z = posList.getInt(2);
-            BlockPos pos = new BlockPos(x, y, z);
-
-            // Extract state index
-            int stateIndex = blockTag.getInt("state"); // "state" is an integer index into the palette
-            if (stateIndex < 0 || stateIndex >= palette.size()) {
-                sendDebugMessage("Invalid state index: " + stateIndex + " at block " + pos);
-                continue;
+        if (PENDING.get(key) != schematic && FAILED.get(key) != schematic) {
+            // Set the desired alpha value (0.0F = fully transparent, 1.0F = fully opaque)
+            float alpha = DEBUG ? 1.0F : 0.5F;
+            try {
+                GhostPreviewMesh.buildAsync(schematic.schematic(), rotation, alpha)
+                        .whenCompleteAsync((mesh, error) -> onMeshBuilt(key, schematic, mesh, error), Minecraft.getInstance());
+                PENDING.put(key, schematic);
+            } catch (RejectedExecutionException e) {
+                // Workers are saturated, the next frame will try again
             }
-            BlockState state = palette.get(stateIndex);
-
-            // Extract NBT if present
-            @Nullable CompoundTag nbt = blockTag.contains("nbt", 10) ? blockTag.getCompound("nbt") : null;
-
-            StructureTemplate.StructureBlockInfo blockInfo = new StructureTemplate.StructureBlockInfo(pos, state, nbt);
-            blockInfos.add(blockInfo);
         }
-
-        sendDebugMessage("Loaded " + blockInfos.size() + " blocks from schematic '" + schematicName + "'.");
-        return blockInfos;
+        return cached != null ? cached.mesh() : null;
     }
 
     /**
-     * Retrieves the Property object for a given BlockState and property name.
-     *
-     * @param state The BlockState.
-     * @param name  The property name.
-     * @return The Property object or null if not found.
+     * Swaps a freshly built mesh in, on the render thread. Results for a schematic version that
+     * was superseded while building are dropped.
      */
-    @Nullable
-    private <T extends Comparable<T>> Property<T> getProperty(BlockState state, String name) {
-        for (Property<?> prop : state.getProperties()) {
-            if (prop.getName().equals(name)) {
-                @SuppressWarnings("unchecked")
-                Property<T> typedProp = (Property<T>) prop;
-                return typedProp;
-            }
+    private static void onMeshBuilt(String key, ClientSchematicCache.Entry source, @Nullable GhostPreviewMesh mesh, @Nullable Throwable error) {
+        if (PENDING.get(key) != source) {
+            if (mesh != null) mesh.close();
+            return;
         }
-        return null;
-    }
+        PENDING.remove(key);
+        if (error != null || mesh == null) {
+            LOGGER.warn("Failed to build ghost preview for {}", key, error);
+            FAILED.put(key, source);
+            return;
+        }
+        FAILED.remove(key);
 
-    /**
-     * Sets a Property value on a BlockState.
-     *
-     * @param state      The original BlockState.
-     * @param property   The Property to set.
-     * @param value      The string value to parse and set.
-     * @param blockName  The name of the block (for debugging purposes).
-     * @return The updated BlockState.
-     */
-    private <T extends Comparable<T>> BlockState setBlockStateProperty(BlockState state, Property<T> property, String value, String blockName) {
-        Optional<T> parsedValue = property.getValue(value);
-        if (parsedValue.isPresent()) {
-            return state.setValue(property, parsedValue.get());
-        } else {
-            sendDebugMessage("Invalid value '" + value + "' for property '" + property.getName() + "' on block '" + blockName + "'.");
-            return state;
+        CachedMesh previous = MESHES.put(key, new CachedMesh(source, mesh));
+        if (previous != null) {
+            previous.mesh().close();
         }
     }
 
     /**
-     * Renders the structure based on the provided block information.
+     * Renders the baked structure at the target position.
      *
-     * @param blockInfos     List of StructureBlockInfo to render.
+     * @param mesh           The baked ghost mesh.
      * @param blockEntityPos Position of the block entity.
      * @param targetPos      Target position where the structure should be rendered.
-     * @param rotation       Rotation to apply to the structure.
      * @param poseStack      The PoseStack for rendering transformations.
-     * @param bufferSource   The buffer source for rendering.
-     * @param combinedLight  Light level for rendering.
+     * @param bufferSource   The buffer source used for distant outlines.
      */
-    private void renderStructure(List<StructureTemplate.StructureBlockInfo> blockInfos, BlockPos blockEntityPos, BlockPos targetPos, Rotation rotation, PoseStack poseStack, MultiBufferSource bufferSource, int combinedLight) {
-        sendDebugMessage("Hello from PrinterBlockEntityRenderer -> renderStructure");
-
-        Level clientLevel = Minecraft.getInstance().level;
-        if (clientLevel == null) {
-            return;
-        }
-        sendDebugMessage("Client level is not null");
+    private void renderStructure(GhostPreviewMesh mesh, BlockPos blockEntityPos, BlockPos targetPos, PoseStack poseStack, MultiBufferSource bufferSource) {
+        Minecraft minecraft = Minecraft.getInstance();
+        Frustum frustum = minecraft.levelRenderer.getFrustum();
+        Vec3 cameraPos = minecraft.gameRenderer.getMainCamera().getPosition();
 
         poseStack.pushPose();
 
@@ -228,85 +162,12 @@ public class PrinterBlockEntityRenderer implements BlockEntityRenderer<PrinterBl
         // Translate pose stack by the offset to the target position
         poseStack.translate(offsetX, offsetY, offsetZ);
 
-        StructurePlaceSettings placeSettings = new StructurePlaceSettings()
-                .setRotation(rotation)
-                .setMirror(Mirror.NONE)
-                .setIgnoreEntities(false)
-                .setFinalizeEntities(true);
-
-        sendDebugMessage("BlockInfos size: " + blockInfos.size());
-
-        // Render each block in the structure
-        for (StructureTemplate.StructureBlockInfo blockInfo : blockInfos) {
-            BlockState state = blockInfo.state();
-            if (state.isAir()) {
-                continue;
-            }
-
-            BlockPos localPos = blockInfo.pos();
-
-            // Apply rotation to local position
-            BlockPos rotatedPos = StructureTemplate.calculateRelativePosition(placeSettings, localPos);
-
-            // Rotate the block state
-            BlockState rotatedState = state.rotate(placeSettings.getRotation());
-
-            // Push matrix for the block
-            poseStack.pushPose();
-
-            // Translate to block position within the structure
-            poseStack.translate(rotatedPos.getX(), rotatedPos.getY(), rotatedPos.getZ());
-
-            // Render the block with translucency
-            renderTransparentBlock(rotatedState, poseStack, bufferSource, combinedLight);
-
-            // Pop matrix for the block
-            poseStack.popPose();
-        }
+        mesh.draw(poseStack, targetPos, frustum, cameraPos, bufferSource);
 
         poseStack.popPose();
-
-        // If bufferSource is a BufferSource, flush the buffers
-        if (bufferSource instanceof MultiBufferSource.BufferSource) {
-            ((MultiBufferSource.BufferSource) bufferSource).endBatch();
-        }
     }
 
-    /**
-     * Renders a single block with optional transparency.
-     *
-     * @param state          The BlockState to render.
-     * @param poseStack      The PoseStack for rendering transformations.
-     * @param bufferSource   The buffer source for rendering.
-     * @param combinedLight  Light level for rendering.
-     */
-    private void renderTransparentBlock(BlockState state, PoseStack poseStack, MultiBufferSource bufferSource, int combinedLight) {
-        BlockRenderDispatcher blockRenderer = Minecraft.getInstance().getBlockRenderer();
-        BakedModel model = blockRenderer.getBlockModel(state);
-
-        // Set the desired alpha value (0.0F = fully transparent, 1.0F = fully opaque)
-        float alpha = DEBUG ? 1.0F : 0.5F; // Adjust this value as needed
-
-        // Choose the appropriate RenderType based on alpha
-        RenderType renderType = alpha < 1.0F ? RenderType.translucent() : RenderType.solid();
-
-        // Get the original VertexConsumer
-        VertexConsumer originalConsumer = bufferSource.getBuffer(renderType);
-
-        // Wrap it with our AlphaAdjustingVertexConsumer if transparency is needed
-        VertexConsumer consumer = alpha < 1.0F ? new AlphaAdjustingVertexConsumer(originalConsumer, alpha) : originalConsumer;
-
-        // Render the block using the adjusted VertexConsumer
-        blockRenderer.getModelRenderer().renderModel(
-                poseStack.last(),
-                consumer,
-                state,
-                model,
-                1.0F, 1.0F, 1.0F, // RGB colors
-                combinedLight,
-                OverlayTexture.NO_OVERLAY
-        );
-    }
+    private record CachedMesh(ClientSchematicCache.Entry source, GhostPreviewMesh mesh) {}
 
     @Override
     public boolean shouldRenderOffScreen(PrinterBlockEntity blockEntity) {
@@ -0,0 +1,56 @@
+package fr.thoridan.client.printer.ui;
+
+import fr.thoridan.Techutilities;
+import fr.thoridan.schematic.SchematicCatalogue;
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Client copy of the server's {@link SchematicCatalogue}, kept up to date by catalogue packets.
+ * Lets the printer screen list and pick schematics the server already holds, without touching the disk.
+ * Client thread only.
+ */
+@Mod.EventBusSubscriber(modid = Techutilities.MODID, value = Dist.CLIENT)
+public final class ClientSchematicCatalogue {
+    private static final Map<String, SchematicCatalogue.Entry> ENTRIES = new TreeMap<>();
+
+    private ClientSchematicCatalogue() {}
+
+    public static void apply(boolean reset, List<SchematicCatalogue.Entry> entries, List<String> removed) {
+        if (reset) {
+            ENTRIES.clear();
+        }
+        for (SchematicCatalogue.Entry entry : entries) {
+            ENTRIES.put(entry.name(), entry);
+        }
+        removed.forEach(ENTRIES::remove);
+
+        if (Minecraft.getInstance().screen instanceof PrinterScreen screen) {
+            screen.onSchematicListChanged();
+        }
+    }
+
+    /**
+     * Entries sorted by name.
+     */
+    public static List<SchematicCatalogue.Entry> entries() {
+        return new ArrayList<>(ENTRIES.values());
+    }
+
+    public static SchematicCatalogue.Entry get(String name) {
+        return ENTRIES.get(name);
+    }
+
+    @SubscribeEvent
+    public static void onLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        ENTRIES.clear();
+    }
+}
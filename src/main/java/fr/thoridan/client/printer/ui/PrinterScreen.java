@@ -3,22 +3,20 @@ package fr.thoridan.client.printer.ui;
 import com.mojang.blaze3d.systems.RenderSystem;
 import fr.thoridan.Techutilities;
 import fr.thoridan.block.PrinterBlockEntity;
+import fr.thoridan.client.printer.upload.SchematicUploader;
 import fr.thoridan.client.printer.widget.TextButton;
 import fr.thoridan.menu.PrinterMenu;
 import fr.thoridan.network.ModNetworking;
 import fr.thoridan.network.printer.*;
-import net.minecraft.client.Minecraft;
+import fr.thoridan.schematic.SchematicCatalogue;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.components.CycleButton;
 import net.minecraft.client.gui.components.EditBox;
+import net.minecraft.client.gui.components.Tooltip;
 import net.minecraft.client.gui.screens.inventory.AbstractContainerScreen;
 import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.core.BlockPos;
-import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.ListTag;
-import net.minecraft.nbt.NbtIo;
-import net.minecraft.nbt.Tag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Inventory;
@@ -27,9 +25,6 @@ import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.block.Rotation;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.*;
 
 public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
@@ -38,9 +33,11 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
     private static final int MAX_DISTANCE_ALLOWED = 50;
     private static final int MAX_BLOCKS = 11000;
     private static final long VALIDATION_DELAY_MS = 500; // half-second
+    private static final int SERVER_ONLY_COLOR = 0xAAAAAA;
     private boolean needsValidation = false;
     private long lastChangeTime = 0L;
     private List<String> schematics = new ArrayList<>();
+    private final Set<String> localSchematics = new HashSet<>();
     private List<TextButton> schematicButtons = new ArrayList<>();
     private Map<Item, Integer> missingItems = Collections.emptyMap();
     private EditBox posXField, posYField, posZField;
@@ -56,6 +53,7 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
         this.imageWidth = 8 + (12 * 18) + 8;
         this.imageHeight = 18 + (7 * 18) + 4 + (3 * 18) + 4 + 18 + 4 + 28;
         loadSchematics();
+        SchematicIndex.get().refreshAsync(this::onSchematicListChanged);
     }
 
     @Override
@@ -131,15 +129,26 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
         if (!missingItems.isEmpty()) renderMissingItemsPopup(guiGraphics);
         if (notEnoughEnergy) renderNotEnoughEnergyPopup(guiGraphics);
 
-        int placementDelay = menu.getBlockEntity().getClientPlacementDelayTicks();
-        if (placementDelay > 0) renderPlacementDelayPopup(guiGraphics, placementDelay);
+        PrinterBlockEntity printer = menu.getBlockEntity();
+        if (printer.getClientProgressPhase() == PlacementProgressPacket.PHASE_COUNTDOWN) {
+            int ticks = printer.getClientProgressRemaining();
+            if (ticks > 0) renderPlacementDelayPopup(guiGraphics, String.format("Time remaining: %.1fs", ticks / 20f));
+        } else if (printer.getClientProgressPhase() == PlacementProgressPacket.PHASE_PLACING) {
+            int total = printer.getClientProgressTotal();
+            renderPlacementDelayPopup(guiGraphics, "Blocks placed: " + (total - printer.getClientProgressRemaining()) + " / " + total);
+        }
 
         restoreRenderingState();
 
         if (isMouseOverEnergyBar(mouseX, mouseY)) {
             int e = menu.getBlockEntity().getEnergyStored();
             int m = menu.getBlockEntity().getMaxEnergyStored();
-            guiGraphics.renderComponentTooltip(font, List.of(Component.literal(e + " / " + m + " FE")), mouseX, mouseY);
+            int in = menu.getBlockEntity().getEnergyReceivedPerTick();
+            int out = menu.getBlockEntity().getEnergyExtractedPerTick();
+            guiGraphics.renderComponentTooltip(font, List.of(
+                    Component.literal(e + " / " + m + " FE"),
+                    Component.literal("+" + in + " FE/t  -" + out + " FE/t")
+            ), mouseX, mouseY);
         }
     }
 
@@ -181,24 +190,40 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
     //                 SCHEMATICS
     // --------------------------------------------------
 
+    /**
+     * Fills the schematic list from the server catalogue and the in-memory local index, without touching the schematic files.
+     * Schematics the server holds can be picked directly; local ones are uploaded when picked.
+     * The ghost preview is built from local files only, so server-only schematics are shown greyed out, without a preview.
+     */
     private void loadSchematics() {
-        File folder = new File(Minecraft.getInstance().gameDirectory, "schematics");
-        if (!folder.exists() || !folder.isDirectory()) return;
-
-        File[] files = folder.listFiles((d, name) -> name.endsWith(".schematic") || name.endsWith(".nbt"));
-        if (files == null) return;
-
-        for (File f : files) {
-            try (FileInputStream fis = new FileInputStream(f)) {
-                CompoundTag nbt = NbtIo.readCompressed(fis);
-                if (nbt != null && nbt.contains("blocks", Tag.TAG_LIST)) {
-                    ListTag blocksTag = nbt.getList("blocks", Tag.TAG_COMPOUND);
-                    if (blocksTag.size() <= MAX_BLOCKS) {
-                        schematics.add(f.getName());
-                    }
-                }
-            } catch (IOException ignored) {}
+        Set<String> names = new TreeSet<>();
+        for (SchematicCatalogue.Entry entry : ClientSchematicCatalogue.entries()) {
+            if (entry.blockCount() <= MAX_BLOCKS) {
+                names.add(entry.name());
+            }
         }
+        localSchematics.clear();
+        for (SchematicIndex.Entry entry : SchematicIndex.get().entries()) {
+            if (entry.blockCount() <= MAX_BLOCKS) {
+                names.add(entry.name());
+                localSchematics.add(entry.name());
+            }
+        }
+        schematics.clear();
+        schematics.addAll(names);
+    }
+
+    /**
+     * Called on the client thread when the server catalogue changed, or once the background refresh
+     * of the local index found new, changed or deleted files.
+     */
+    public void onSchematicListChanged() {
+        if (minecraft == null || minecraft.screen != this) return;
+        loadSchematics();
+        selectedIndex = (selectedSchematicName != null) ? schematics.indexOf(selectedSchematicName) : -1;
+        schematicButtons.forEach(this::removeWidget);
+        createSchematicButtons();
+        updateSchematicButtonColors();
     }
 
     private void createSchematicButtons() {
@@ -212,7 +237,7 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
             var name = schematics.get(i);
             var text = Component.literal(name);
             int textWidth = font.width(text);
-            int color = (i == selectedIndex) ? 0xFFFF00 : 0xFFFFFF;
+            int color = (i == selectedIndex) ? 0xFFFF00 : baseColor(name);
 
             var button = new TextButton(x, startY + i * (buttonHeight + 2), textWidth, buttonHeight, text, b -> {
                 // 1) Update selection UI
@@ -220,8 +245,10 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
                 selectedSchematicName = name;
                 updateSchematicButtonColors();
 
-                // 2) Immediately upload schematic from client's local folder
-                uploadSchematicFromClient(selectedSchematicName);
+                // 2) Upload local schematics; the server skips the transfer if it already holds the same content
+                if (localSchematics.contains(selectedSchematicName)) {
+                    SchematicUploader.start(selectedSchematicName);
+                }
 
                 // 3) Optionally send a SchematicSelectionPacket
                 //    (assuming the server also expects to store the name or do something else)
@@ -231,6 +258,9 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
                 ));
 
             }, color);
+            if (!localSchematics.contains(name)) {
+                button.setTooltip(Tooltip.create(Component.literal("Only on the server: placeable, but no preview")));
+            }
 
             schematicButtons.add(button);
             addRenderableWidget(button);
@@ -238,58 +268,17 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
     }
 
 
-    private void uploadSchematicFromClient(String schematicName) {
-        // 1) Find the local file in the "schematics" folder
-        File file = new File(Minecraft.getInstance().gameDirectory, "schematics/" + schematicName);
-        if (!file.exists()) {
-            System.out.println("Schematic file not found on client: " + file.getAbsolutePath());
-            Techutilities.broadcastServerMessage("Schematic file not found on client: " + file.getAbsolutePath(), false);
-            return;
-        }
-
-        // 2) Read its bytes
-        byte[] fileBytes;
-        try (FileInputStream fis = new FileInputStream(file)) {
-            fileBytes = fis.readAllBytes(); // Java 9+
-        } catch (IOException e) {
-            System.out.println("Error reading schematic file: " + e.getMessage());
-            Techutilities.broadcastServerMessage("Error reading schematic file: " + e.getMessage(), false);
-            return;
-        }
-
-        // 3) (Optional) compress if needed. If .nbt is already compressed, you might skip this.
-        //    byte[] fileBytes = MyCompressionUtils.compress(originalBytes);
-
-        // 4) Split the byte[] into manageable chunks
-        final int CHUNK_SIZE = 32 * 1024; // 32 KB
-        int totalChunks = (fileBytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
-
-        // 5) Send each chunk to server
-        for (int i = 0; i < totalChunks; i++) {
-            int start = i * CHUNK_SIZE;
-            int end = Math.min(start + CHUNK_SIZE, fileBytes.length);
-            byte[] chunkData = Arrays.copyOfRange(fileBytes, start, end);
-
-            // This is your custom packet class that handles uploading
-            ModNetworking.INSTANCE.sendToServer(new UploadSchematicPacket(
-                    schematicName, // or you might just pass the file's base name
-                    i,
-                    totalChunks,
-                    chunkData
-            ));
-        }
-
-        System.out.println("Schematic upload initiated for " + schematicName);
-    }
-
-
     private void updateSchematicButtonColors() {
         for (int i = 0; i < schematicButtons.size(); i++) {
             var b = schematicButtons.get(i);
-            b.setTextColor(i == selectedIndex ? 0xFFFF00 : 0xFFFFFF);
+            b.setTextColor(i == selectedIndex ? 0xFFFF00 : baseColor(schematics.get(i)));
         }
     }
 
+    private int baseColor(String name) {
+        return localSchematics.contains(name) ? 0xFFFFFF : SERVER_ONLY_COLOR;
+    }
+
     // --------------------------------------------------
     //              PLACEMENT & ROTATION
     // --------------------------------------------------
@@ -458,11 +447,7 @@ public class PrinterScreen extends AbstractContainerScreen<PrinterMenu> {
         guiGraphics.pose().popPose();
     }
 
-    private void renderPlacementDelayPopup(GuiGraphics guiGraphics, int ticks) {
-        // Compute remaining time
-        int   sec  = ticks / 20;
-        float frac = (ticks % 20) / 20f;
-        String timeText = String.format("Time remaining: %.1fs", sec + frac);
+    private void renderPlacementDelayPopup(GuiGraphics guiGraphics, String timeText) {
 
         // Title
         String title = "Placing Structure...";
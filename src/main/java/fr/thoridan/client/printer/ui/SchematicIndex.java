@@ -0,0 +1,260 @@
+package fr.thoridan.client.printer.ui;
+
+import com.mojang.logging.LogUtils;
+import fr.thoridan.network.printer.SchematicManager;
+import fr.thoridan.schematic.CompiledSchematic;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.Tag;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Persistent metadata index of the client's local schematics folder.
+ * Each file is keyed by name, size and mtime, so only new or changed files ever get parsed.
+ * Files that failed to parse are remembered the same way, and only tried again once they change.
+ * The index is stored next to the schematics as {@value #INDEX_FILE_NAME}, a name the scan never picks up.
+ */
+public final class SchematicIndex {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String INDEX_FILE_NAME = ".printer_index.dat";
+    private static final int INDEX_VERSION = 1;
+
+    private static SchematicIndex instance;
+
+    private final File folder;
+    private final Map<String, Entry> entries = new HashMap<>();
+    // File name -> {length, lastModified} of files that could not be parsed
+    private final Map<String, long[]> failed = new HashMap<>();
+    private boolean refreshing = false;
+
+    /**
+     * Metadata of one schematic file.
+     *
+     * @param requiredItems Item id -> amount needed to build the schematic.
+     */
+    public record Entry(String name, long length, long lastModified, int blockCount,
+                        int sizeX, int sizeY, int sizeZ, int paletteSize, Map<String, Integer> requiredItems) {
+
+        private CompoundTag save() {
+            CompoundTag tag = new CompoundTag();
+            tag.putString("Name", name);
+            tag.putLong("Length", length);
+            tag.putLong("LastModified", lastModified);
+            tag.putInt("BlockCount", blockCount);
+            tag.putIntArray("Size", new int[]{sizeX, sizeY, sizeZ});
+            tag.putInt("PaletteSize", paletteSize);
+            CompoundTag items = new CompoundTag();
+            requiredItems.forEach(items::putInt);
+            tag.put("Items", items);
+            return tag;
+        }
+
+        private static Entry load(CompoundTag tag) {
+            int[] size = tag.getIntArray("Size");
+            CompoundTag itemsTag = tag.getCompound("Items");
+            Map<String, Integer> items = new HashMap<>();
+            for (String key : itemsTag.getAllKeys()) {
+                items.put(key, itemsTag.getInt(key));
+            }
+            return new Entry(tag.getString("Name"), tag.getLong("Length"), tag.getLong("LastModified"), tag.getInt("BlockCount"),
+                    size.length == 3 ? size[0] : 0, size.length == 3 ? size[1] : 0, size.length == 3 ? size[2] : 0,
+                    tag.getInt("PaletteSize"), Collections.unmodifiableMap(items));
+        }
+    }
+
+    private SchematicIndex(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Returns the index of the local "schematics" folder, reading the sidecar file on first use.
+     */
+    public static synchronized SchematicIndex get() {
+        if (instance == null) {
+            instance = new SchematicIndex(new File(Minecraft.getInstance().gameDirectory, "schematics"));
+            instance.loadIndexFile();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the entries currently known, sorted by name. Never touches the schematic files.
+     */
+    public synchronized List<Entry> entries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparing(Entry::name));
+        return list;
+    }
+
+    /**
+     * Re-scans the folder in the background, parsing only files whose size or mtime changed.
+     *
+     * @param onChanged Run on the client thread if any entry was added, updated or removed.
+     */
+    public void refreshAsync(Runnable onChanged) {
+        synchronized (this) {
+            if (refreshing) return;
+            refreshing = true;
+        }
+        Util.ioPool().execute(() -> {
+            boolean changed;
+            try {
+                changed = refresh();
+            } finally {
+                synchronized (this) {
+                    refreshing = false;
+                }
+            }
+            if (changed) {
+                Minecraft.getInstance().execute(onChanged);
+            }
+        });
+    }
+
+    private boolean refresh() {
+        File[] files = folder.listFiles((d, name) -> SchematicManager.isValidName(name));
+        if (files == null) files = new File[0];
+
+        Map<String, Entry> known;
+        Map<String, long[]> knownFailed;
+        synchronized (this) {
+            known = new HashMap<>(entries);
+            knownFailed = new HashMap<>(failed);
+        }
+
+        Map<String, Entry> updated = new HashMap<>();
+        Map<String, long[]> updatedFailed = new HashMap<>();
+        boolean changed = false;
+        boolean failedChanged = false;
+        for (File f : files) {
+            long length = f.length();
+            long lastModified = f.lastModified();
+            Entry previous = known.get(f.getName());
+            if (previous != null && previous.length() == length && previous.lastModified() == lastModified) {
+                updated.put(f.getName(), previous);
+                continue;
+            }
+            long[] previousFailure = knownFailed.get(f.getName());
+            if (previousFailure != null && previousFailure[0] == length && previousFailure[1] == lastModified) {
+                updatedFailed.put(f.getName(), previousFailure);
+                continue;
+            }
+            Entry scanned = scan(f);
+            if (scanned != null) {
+                updated.put(f.getName(), scanned);
+                changed = true;
+            } else {
+                updatedFailed.put(f.getName(), new long[]{length, lastModified});
+                failedChanged = true;
+            }
+            if (previous != null) {
+                changed = true; // Its entry was updated or dropped
+            }
+        }
+        if (updated.size() != known.size()) {
+            changed = true; // Some files were deleted
+        }
+        if (updatedFailed.size() != knownFailed.size()) {
+            failedChanged = true;
+        }
+
+        if (changed || failedChanged) {
+            synchronized (this) {
+                entries.clear();
+                entries.putAll(updated);
+                failed.clear();
+                failed.putAll(updatedFailed);
+            }
+            saveIndexFile(updated.values(), updatedFailed);
+        }
+        return changed;
+    }
+
+    private static Entry scan(File file) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        CompiledSchematic schematic;
+        try {
+            schematic = CompiledSchematic.load(file, BuiltInRegistries.BLOCK.asLookup());
+        } catch (IOException e) {
+            LOGGER.debug("Could not index schematic {}: {}", file, e.getMessage());
+            return null;
+        }
+
+        Map<String, Integer> items = new HashMap<>();
+        schematic.getRequiredItems().forEach((item, count) -> items.put(BuiltInRegistries.ITEM.getKey(item).toString(), count));
+
+        return new Entry(file.getName(), length, lastModified, schematic.blockCount(),
+                schematic.getSizeX(), schematic.getSizeY(), schematic.getSizeZ(),
+                schematic.getPaletteSize(), Collections.unmodifiableMap(items));
+    }
+
+    private void loadIndexFile() {
+        File indexFile = new File(folder, INDEX_FILE_NAME);
+        if (!indexFile.exists()) return;
+        try {
+            CompoundTag root = NbtIo.readCompressed(indexFile);
+            if (root.getInt("Version") != INDEX_VERSION) return;
+            ListTag list = root.getList("Entries", Tag.TAG_COMPOUND);
+            for (int i = 0; i < list.size(); i++) {
+                Entry entry = Entry.load(list.getCompound(i));
+                entries.put(entry.name(), entry);
+            }
+            ListTag failedList = root.getList("Failed", Tag.TAG_COMPOUND);
+            for (int i = 0; i < failedList.size(); i++) {
+                CompoundTag tag = failedList.getCompound(i);
+                failed.put(tag.getString("Name"), new long[]{tag.getLong("Length"), tag.getLong("LastModified")});
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read schematic index, it will be rebuilt: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the sidecar to a temp file first and moves it over the old one, so a crash never leaves it half written.
+     */
+    private void saveIndexFile(Collection<Entry> toSave, Map<String, long[]> failedFiles) {
+        if (!folder.isDirectory()) return;
+        CompoundTag root = new CompoundTag();
+        root.putInt("Version", INDEX_VERSION);
+        ListTag list = new ListTag();
+        for (Entry entry : toSave) {
+            list.add(entry.save());
+        }
+        root.put("Entries", list);
+        ListTag failedList = new ListTag();
+        failedFiles.forEach((name, stamp) -> {
+            CompoundTag tag = new CompoundTag();
+            tag.putString("Name", name);
+            tag.putLong("Length", stamp[0]);
+            tag.putLong("LastModified", stamp[1]);
+            failedList.add(tag);
+        });
+        root.put("Failed", failedList);
+
+        Path file = folder.toPath().resolve(INDEX_FILE_NAME);
+        Path temp = file.resolveSibling(INDEX_FILE_NAME + ".tmp");
+        try {
+            NbtIo.writeCompressed(root, temp.toFile());
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not write schematic index: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package fr.thoridan.client.printer.upload;
+
+import com.mojang.logging.LogUtils;
+import fr.thoridan.Techutilities;
+import fr.thoridan.network.ModNetworking;
+import fr.thoridan.network.printer.UploadAckPacket;
+import fr.thoridan.network.printer.UploadSchematicPacket;
+import fr.thoridan.network.printer.UploadStartPacket;
+import fr.thoridan.schematic.SchematicRegistry;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client side of the schematic upload protocol.
+ * <p>
+ * The file is hashed off the main thread, announced with an {@link UploadStartPacket}, then sent in chunks read
+ * directly from a {@link FileChannel} into the packet buffer. At most {@link #WINDOW} chunks are in flight:
+ * each {@link UploadAckPacket} from the server slides the window, so a large upload never floods the connection.
+ * The first ack may point past chunk 0, in which case the server already has the beginning of the file,
+ * or be {@link UploadAckPacket#DONE} right away when the server already stores that exact content.
+ * Uploads the server stops answering are dropped after {@link #TIMEOUT_MILLIS}, and all of them on logout.
+ */
+@Mod.EventBusSubscriber(modid = Techutilities.MODID, value = Dist.CLIENT)
+public final class SchematicUploader {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int CHUNK_SIZE = UploadSchematicPacket.MAX_CHUNK_SIZE;
+    private static final int WINDOW = 8;
+    private static final long TIMEOUT_MILLIS = 120_000; // Longer than the server's default idle timeout
+    private static final int TIMEOUT_CHECK_TICKS = 20;
+    private static int ticks = 0;
+
+    private static final Map<String, Upload> UPLOADS = new HashMap<>(); // Main thread only
+    private static final Map<Path, FileHash> HASHES = new ConcurrentHashMap<>();
+
+    private SchematicUploader() {}
+
+    private record FileHash(long size, long lastModified, String hash) {}
+
+    private static final class Upload {
+        private final String name;
+        private final FileChannel channel;
+        private final long size;
+        private final int totalChunks;
+        private int acked = 0;
+        private int nextToSend = 0;
+        private boolean started = false; // Set by the first ack, which tells where to resume from
+        private long lastAck = Util.getMillis();
+
+        private Upload(String name, FileChannel channel, long size) {
+            this.name = name;
+            this.channel = channel;
+            this.size = size;
+            this.totalChunks = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close '{}'", name, e);
+            }
+        }
+    }
+
+    /**
+     * Uploads a schematic from the local {@code schematics} folder, replacing any upload of the same name in progress.
+     */
+    public static void start(String schematicName) {
+        Path file = Minecraft.getInstance().gameDirectory.toPath().resolve("schematics").resolve(schematicName);
+        Upload previous = UPLOADS.remove(schematicName);
+        if (previous != null) {
+            previous.close();
+        }
+
+        Util.ioPool().execute(() -> {
+            try {
+                long size = Files.size(file);
+                String sha256 = hash(file, size);
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                Minecraft.getInstance().execute(() -> {
+                    if (Minecraft.getInstance().getConnection() == null) { // Logged out while hashing
+                        closeQuietly(channel);
+                        return;
+                    }
+                    Upload upload = new Upload(schematicName, channel, size);
+                    Upload replaced = UPLOADS.put(schematicName, upload);
+                    if (replaced != null) {
+                        replaced.close();
+                    }
+                    ModNetworking.INSTANCE.sendToServer(new UploadStartPacket(schematicName, size, sha256, CHUNK_SIZE));
+                });
+            } catch (IOException e) {
+                LOGGER.warn("Could not read schematic '{}'", file, e);
+            }
+        });
+    }
+
+    /**
+     * Hash of a local file, recomputed only when its size or modification time changed.
+     */
+    private static String hash(Path file, long size) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        FileHash known = HASHES.get(file);
+        if (known != null && known.size() == size && known.lastModified() == lastModified) {
+            return known.hash();
+        }
+        String hash = SchematicRegistry.hash(file);
+        HASHES.put(file, new FileHash(size, lastModified, hash));
+        return hash;
+    }
+
+    /**
+     * Called on the main thread for each {@link UploadAckPacket}.
+     */
+    public static void onAck(String schematicName, int nextChunk, byte status) {
+        Upload upload = UPLOADS.get(schematicName);
+        if (upload == null) return;
+
+        if (status != UploadAckPacket.CONTINUE) {
+            if (status == UploadAckPacket.FAILED) {
+                LOGGER.warn("Server rejected the upload of '{}'", schematicName);
+            }
+            UPLOADS.remove(schematicName);
+            upload.close();
+            return;
+        }
+
+        upload.lastAck = Util.getMillis();
+        if (!upload.started) {
+            upload.started = true;
+            upload.nextToSend = nextChunk; // Resume point
+        }
+        upload.acked = Math.max(upload.acked, nextChunk);
+        upload.nextToSend = Math.max(upload.nextToSend, upload.acked);
+
+        try {
+            while (upload.nextToSend < upload.totalChunks && upload.nextToSend - upload.acked < WINDOW) {
+                sendChunk(upload, upload.nextToSend++);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read schematic '{}'", schematicName, e);
+            UPLOADS.remove(schematicName);
+            upload.close();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ++ticks < TIMEOUT_CHECK_TICKS) return;
+        ticks = 0;
+
+        long now = Util.getMillis();
+        Iterator<Upload> it = UPLOADS.values().iterator();
+        while (it.hasNext()) {
+            Upload upload = it.next();
+            if (now - upload.lastAck > TIMEOUT_MILLIS) {
+                LOGGER.warn("Upload of '{}' timed out", upload.name);
+                it.remove();
+                upload.close();
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        UPLOADS.values().forEach(Upload::close);
+        UPLOADS.clear();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close upload file", e);
+        }
+    }
+
+    private static void sendChunk(Upload upload, int index) throws IOException {
+        long position = (long) index * CHUNK_SIZE;
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, upload.size - position));
+        while (data.hasRemaining()) {
+            if (upload.channel.read(data, position + data.position()) < 0) {
+                throw new IOException("File shrank during upload");
+            }
+        }
+        data.flip();
+        ModNetworking.INSTANCE.sendToServer(new UploadSchematicPacket(upload.name, index, data));
+    }
+}
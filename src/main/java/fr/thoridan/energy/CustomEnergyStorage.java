@@ -2,19 +2,43 @@ package fr.thoridan.energy;
 
 import net.minecraftforge.energy.EnergyStorage;
 
+/**
+ * Energy storage that reports changes through a callback.
+ * <p>
+ * In deferred mode, transfers only mark the storage dirty and {@link #flush()}, called once per tick by the owner,
+ * runs the callback at most once. {@link #flush()} also rolls the FE in/out counters over, so
+ * {@link #getReceivedLastTick()} and {@link #getExtractedLastTick()} describe the last complete tick.
+ */
 public class CustomEnergyStorage extends EnergyStorage{
         private Runnable onChange;
+        private final boolean deferred;
+        private boolean dirty = false;
+
+        // Throughput, accumulated during the current tick and published by flush()
+        private int receivedThisTick = 0;
+        private int extractedThisTick = 0;
+        private int receivedLastTick = 0;
+        private int extractedLastTick = 0;
 
         public CustomEnergyStorage(int capacity, Runnable onChange) {
+            this(capacity, false, onChange);
+        }
+
+        /**
+         * @param deferred If true, the callback only runs from {@link #flush()}.
+         */
+        public CustomEnergyStorage(int capacity, boolean deferred, Runnable onChange) {
             super(capacity);
             this.onChange = onChange;
+            this.deferred = deferred;
         }
 
         @Override
         public int receiveEnergy(int maxReceive, boolean simulate) {
             int received = super.receiveEnergy(maxReceive, simulate);
-            if (!simulate && received > 0 && onChange != null) {
-                onChange.run();
+            if (!simulate && received > 0) {
+                receivedThisTick += received;
+                changed();
             }
             return received;
         }
@@ -22,8 +46,9 @@ public class CustomEnergyStorage extends EnergyStorage{
         @Override
         public int extractEnergy(int maxExtract, boolean simulate) {
             int extracted = super.extractEnergy(maxExtract, simulate);
-            if (!simulate && extracted > 0 && onChange != null) {
-                onChange.run();
+            if (!simulate && extracted > 0) {
+                extractedThisTick += extracted;
+                changed();
             }
             return extracted;
         }
@@ -34,5 +59,40 @@ public class CustomEnergyStorage extends EnergyStorage{
                 onChange.run();
             }
         }
-}
 
+        private void changed() {
+            if (deferred) {
+                dirty = true;
+            } else if (onChange != null) {
+                onChange.run();
+            }
+        }
+
+        /**
+         * Ends the current tick: publishes the throughput counters and, if anything changed
+         * (energy or throughput), runs the callback once.
+         */
+        public void flush() {
+            boolean statsChanged = receivedThisTick != receivedLastTick || extractedThisTick != extractedLastTick;
+            receivedLastTick = receivedThisTick;
+            extractedLastTick = extractedThisTick;
+            receivedThisTick = 0;
+            extractedThisTick = 0;
+
+            if ((dirty || statsChanged) && onChange != null) {
+                onChange.run();
+            }
+            dirty = false;
+        }
+
+        public int getReceivedLastTick() { return receivedLastTick; }
+        public int getExtractedLastTick() { return extractedLastTick; }
+
+        /**
+         * Client side: applies throughput counters received from the server.
+         */
+        public void setLastTickStats(int received, int extracted) {
+            this.receivedLastTick = received;
+            this.extractedLastTick = extracted;
+        }
+}
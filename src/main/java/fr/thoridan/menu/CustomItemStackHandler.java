@@ -1,13 +1,34 @@
 package fr.thoridan.menu;
 
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.world.item.Item;
 import net.minecraftforge.items.ItemStackHandler;
 import net.minecraftforge.items.ItemHandlerHelper;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.inventory.AbstractContainerMenu;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Item handler with 127-item slots, which also keeps an index of its content: the total count of each item
+ * and the slots holding it. The index is updated slot by slot as the content changes, so availability checks
+ * cost one lookup per item type and consumption only visits the slots that hold the item.
+ * Stacks changed in place must be reported with {@link #onSlotChanged(int)}.
+ */
 public class CustomItemStackHandler extends ItemStackHandler {
+    private final Reference2IntOpenHashMap<Item> counts = new Reference2IntOpenHashMap<>();
+    private final Map<Item, IntSortedSet> slotsByItem = new Reference2ObjectOpenHashMap<>();
+    // What the index currently holds for each slot
+    private Item[] indexedItems;
+    private int[] indexedCounts;
+
     public CustomItemStackHandler(int size) {
         super(size);
+        rebuildIndex();
     }
 
 
@@ -52,9 +73,131 @@ public class CustomItemStackHandler extends ItemStackHandler {
             } else {
                 existing.grow(reachedLimit ? limit : stack.getCount());
             }
+            reindex(slot);
             onContentsChanged(slot);
         }
 
         return reachedLimit ? ItemHandlerHelper.copyStackWithSize(stack, stack.getCount() - limit) : ItemStack.EMPTY;
     }
+
+    @Override
+    public ItemStack extractItem(int slot, int amount, boolean simulate) {
+        ItemStack extracted = super.extractItem(slot, amount, simulate);
+        if (!simulate && !extracted.isEmpty()) {
+            reindex(slot);
+        }
+        return extracted;
+    }
+
+    @Override
+    public void setStackInSlot(int slot, ItemStack stack) {
+        super.setStackInSlot(slot, stack);
+        reindex(slot);
+    }
+
+    @Override
+    public void setSize(int size) {
+        super.setSize(size);
+        rebuildIndex();
+    }
+
+    @Override
+    protected void onLoad() {
+        rebuildIndex(); // deserializeNBT fills the slots directly
+    }
+
+    /**
+     * Reports a stack that was modified in place (e.g. grown by a container slot), then notifies as usual.
+     */
+    public void onSlotChanged(int slot) {
+        reindex(slot);
+        onContentsChanged(slot);
+    }
+
+    // -----------------------------------------------------
+    //                      INDEX
+    // -----------------------------------------------------
+
+    /**
+     * Total number of this item across all slots, whatever its NBT.
+     */
+    public int getCount(Item item) {
+        return counts.getInt(item);
+    }
+
+    /**
+     * @return Item -> amount still missing to cover the requirement, empty if everything is available.
+     */
+    public Map<Item, Integer> getMissing(Map<Item, Integer> required) {
+        Map<Item, Integer> missing = new HashMap<>();
+        for (Map.Entry<Item, Integer> entry : required.entrySet()) {
+            int available = counts.getInt(entry.getKey());
+            if (available < entry.getValue()) {
+                missing.put(entry.getKey(), entry.getValue() - available);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Removes up to {@code amount} of an item, visiting only the slots that hold it.
+     *
+     * @return The amount actually removed.
+     */
+    public int extract(Item item, int amount) {
+        IntSortedSet slots = slotsByItem.get(item);
+        if (slots == null) return 0;
+
+        int removed = 0;
+        for (int slot : slots.toIntArray()) { // Copy, extracting updates the index
+            // extractItem caps each call at the item's max stack size, slots can hold more
+            while (removed < amount) {
+                ItemStack extracted = extractItem(slot, amount - removed, false);
+                if (extracted.isEmpty()) break;
+                removed += extracted.getCount();
+            }
+            if (removed >= amount) break;
+        }
+        return removed;
+    }
+
+    private void rebuildIndex() {
+        counts.clear();
+        slotsByItem.clear();
+        indexedItems = new Item[stacks.size()];
+        indexedCounts = new int[stacks.size()];
+        for (int slot = 0; slot < stacks.size(); slot++) {
+            reindex(slot);
+        }
+    }
+
+    /**
+     * Replaces what the index holds for a slot with the slot's current content.
+     */
+    private void reindex(int slot) {
+        Item previous = indexedItems[slot];
+        if (previous != null) {
+            int remaining = counts.addTo(previous, -indexedCounts[slot]) - indexedCounts[slot];
+            if (remaining <= 0) {
+                counts.removeInt(previous);
+            }
+            IntSortedSet slots = slotsByItem.get(previous);
+            slots.remove(slot);
+            if (slots.isEmpty()) {
+                slotsByItem.remove(previous);
+            }
+        }
+
+        ItemStack stack = stacks.get(slot);
+        if (stack.isEmpty()) {
+            indexedItems[slot] = null;
+            indexedCounts[slot] = 0;
+        } else {
+            Item item = stack.getItem();
+            indexedItems[slot] = item;
+            indexedCounts[slot] = stack.getCount();
+            counts.addTo(item, stack.getCount());
+            slotsByItem.computeIfAbsent(item, k -> new IntRBTreeSet()).add(slot);
+        }
+    }
 }
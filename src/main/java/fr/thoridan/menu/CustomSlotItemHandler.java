@@ -21,4 +21,13 @@ public class CustomSlotItemHandler extends SlotItemHandler {
         // Return the slot limit, ignoring the item's own max stack size
         return getMaxStackSize();
     }
+
+    @Override
+    public void setChanged() {
+        super.setChanged();
+        // The menu may have grown or shrunk the stack in place, keep the handler's index in step
+        if (getItemHandler() instanceof CustomItemStackHandler handler) {
+            handler.onSlotChanged(getSlotIndex());
+        }
+    }
 }
@@ -6,8 +6,10 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.network.simple.SimpleChannel;
 
+import java.util.zip.Deflater;
+
 public class ModNetworking {
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "6";
     public static final SimpleChannel INSTANCE = NetworkRegistry.newSimpleChannel(
             new ResourceLocation(Techutilities.MODID, "main"),
             () -> PROTOCOL_VERSION,
@@ -15,6 +17,11 @@ public class ModNetworking {
             PROTOCOL_VERSION::equals
     );
 
+    /**
+     * Codec for the bulky parts of our packets: payloads of 2 KB and more are deflated at the fastest level.
+     */
+    public static final PayloadCodec PAYLOAD_CODEC = new PayloadCodec(2048, Deflater.BEST_SPEED);
+
     public static void registerPackets() {
         int id = 0;
         INSTANCE.registerMessage(id++, PlaceStructurePacket.class, PlaceStructurePacket::toBytes, PlaceStructurePacket::new, PlaceStructurePacket::handle);
@@ -22,9 +29,13 @@ public class ModNetworking {
         INSTANCE.registerMessage(id++, RotationChangePacket.class, RotationChangePacket::toBytes, RotationChangePacket::new, RotationChangePacket::handle);
         INSTANCE.registerMessage(id++, PositionUpdatePacket.class, PositionUpdatePacket::toBytes, PositionUpdatePacket::new, PositionUpdatePacket::handle);
         INSTANCE.registerMessage(id++, MissingItemsPacket.class, MissingItemsPacket::toBytes, MissingItemsPacket::new, MissingItemsPacket::handle);
-        INSTANCE.registerMessage(id++, PlacementDelayUpdatePacket.class, PlacementDelayUpdatePacket::toBytes, PlacementDelayUpdatePacket::new, PlacementDelayUpdatePacket::handle);
+        INSTANCE.registerMessage(id++, PlacementProgressPacket.class, PlacementProgressPacket::toBytes, PlacementProgressPacket::new, PlacementProgressPacket::handle);
         INSTANCE.registerMessage(id++, NotEnoughEnergyPacket.class, NotEnoughEnergyPacket::toBytes, NotEnoughEnergyPacket::new, NotEnoughEnergyPacket::handle);
         INSTANCE.registerMessage(id++, UploadSchematicPacket.class, UploadSchematicPacket::toBytes, UploadSchematicPacket::new, UploadSchematicPacket::handle);
+        INSTANCE.registerMessage(id++, UploadStartPacket.class, UploadStartPacket::toBytes, UploadStartPacket::new, UploadStartPacket::handle);
+        INSTANCE.registerMessage(id++, UploadAckPacket.class, UploadAckPacket::toBytes, UploadAckPacket::new, UploadAckPacket::handle);
+        INSTANCE.registerMessage(id++, PrinterSyncPacket.class, PrinterSyncPacket::toBytes, PrinterSyncPacket::new, PrinterSyncPacket::handle);
+        INSTANCE.registerMessage(id++, SchematicCataloguePacket.class, SchematicCataloguePacket::toBytes, SchematicCataloguePacket::new, SchematicCataloguePacket::handle);
     }
 }
 
@@ -0,0 +1,156 @@
+package fr.thoridan.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional compression for the large parts of our packets (item stacks, item bills, upload chunks).
+ * <p>
+ * A payload is written into a scratch buffer first; if it reaches the threshold it is deflated, and kept
+ * deflated only if that made it smaller, so already compressed data (gzip schematics) goes out as is.
+ * Every payload starts with a method byte, so readers decode whatever the writer chose and the
+ * threshold or level can change without touching the protocol.
+ */
+public final class PayloadCodec {
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+    public static final int MAX_DECODED_SIZE = 2 * 1024 * 1024;
+
+    private final int threshold;
+    private final int level;
+
+    /**
+     * @param threshold Payloads smaller than this many bytes are never compressed.
+     * @param level     {@link Deflater} level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    public PayloadCodec(int threshold, int level) {
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    /**
+     * Writes what {@code writer} produces as one payload.
+     */
+    public void write(FriendlyByteBuf buf, Consumer<FriendlyByteBuf> writer) {
+        FriendlyByteBuf body = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            writer.accept(body);
+            compress(buf, body);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * Encodes a payload into a standalone byte array, e.g. to embed it in NBT.
+     */
+    public byte[] encode(Consumer<FriendlyByteBuf> writer) {
+        FriendlyByteBuf out = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            write(out, writer);
+            byte[] bytes = new byte[out.readableBytes()];
+            out.readBytes(bytes);
+            return bytes;
+        } finally {
+            out.release();
+        }
+    }
+
+    private void compress(FriendlyByteBuf buf, ByteBuf body) {
+        int length = body.readableBytes();
+        if (length >= threshold) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(body.nioBuffer());
+                deflater.finish();
+                byte[] compressed = new byte[length];
+                int size = 0;
+                while (!deflater.finished() && size < compressed.length) {
+                    size += deflater.deflate(compressed, size, compressed.length - size);
+                }
+                if (deflater.finished() && size < length) {
+                    buf.writeByte(DEFLATE);
+                    buf.writeVarInt(length);
+                    buf.writeVarInt(size);
+                    buf.writeBytes(compressed, 0, size);
+                    return;
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        buf.writeByte(RAW);
+        buf.writeVarInt(length);
+        buf.writeBytes(body, body.readerIndex(), length);
+    }
+
+    /**
+     * Reads one payload written by any codec instance, up to {@link #MAX_DECODED_SIZE} bytes.
+     *
+     * @return A buffer holding the decoded payload, to read the fields from.
+     */
+    public static FriendlyByteBuf read(FriendlyByteBuf buf) {
+        return read(buf, MAX_DECODED_SIZE);
+    }
+
+    /**
+     * Reads one payload, refusing it before anything is allocated or inflated if it declares more than
+     * {@code maxLength} bytes, or more raw bytes than the packet holds.
+     */
+    public static FriendlyByteBuf read(FriendlyByteBuf buf, int maxLength) {
+        byte method = buf.readByte();
+        int length = buf.readVarInt();
+        if (length < 0 || length > Math.min(maxLength, MAX_DECODED_SIZE)) {
+            throw new IllegalArgumentException("Payload too large: " + length);
+        }
+        if (method == RAW) {
+            if (length > buf.readableBytes()) {
+                throw new IllegalArgumentException("Truncated payload");
+            }
+            byte[] raw = new byte[length];
+            buf.readBytes(raw);
+            return new FriendlyByteBuf(Unpooled.wrappedBuffer(raw));
+        }
+        if (method != DEFLATE) {
+            throw new IllegalArgumentException("Unknown payload encoding: " + method);
+        }
+
+        int size = buf.readVarInt();
+        if (size < 0 || size > buf.readableBytes()) {
+            throw new IllegalArgumentException("Truncated payload");
+        }
+        byte[] decoded = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buf.nioBuffer(buf.readerIndex(), size));
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(decoded, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalArgumentException("Corrupted payload");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted payload", e);
+        } finally {
+            inflater.end();
+        }
+        buf.skipBytes(size);
+        return new FriendlyByteBuf(Unpooled.wrappedBuffer(decoded));
+    }
+
+    /**
+     * Decodes a payload produced by {@link #encode(Consumer)}.
+     */
+    public static FriendlyByteBuf decode(byte[] bytes) {
+        return read(new FriendlyByteBuf(Unpooled.wrappedBuffer(bytes)));
+    }
+}
@@ -0,0 +1,75 @@
+package fr.thoridan.network.printer;
+
+import fr.thoridan.block.PrinterBlockEntity;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent from server -> client when a printer's placement progress changes course: start, pause, resume,
+ * finish, or when the client's interpolation has drifted too far from the real progress.
+ * In between, the client extrapolates {@code remaining - (gameTime - syncGameTime) * rate} on its own.
+ */
+public class PlacementProgressPacket {
+    public static final byte PHASE_NONE = 0;
+    public static final byte PHASE_COUNTDOWN = 1; // Remaining is in ticks
+    public static final byte PHASE_PLACING = 2;   // Remaining is in blocks
+
+    private final BlockPos pos;
+    private final byte phase;
+    private final long syncGameTime;
+    private final int remaining;
+    private final int total;
+    private final float rate;
+
+    /**
+     * @param syncGameTime Game time at which {@code remaining} was measured.
+     * @param remaining    Ticks or blocks left at {@code syncGameTime}.
+     * @param total        Total ticks or blocks of the phase.
+     * @param rate         Ticks or blocks done per game tick, 0 while paused.
+     */
+    public PlacementProgressPacket(BlockPos pos, byte phase, long syncGameTime, int remaining, int total, float rate) {
+        this.pos = pos;
+        this.phase = phase;
+        this.syncGameTime = syncGameTime;
+        this.remaining = remaining;
+        this.total = total;
+        this.rate = rate;
+    }
+
+    public PlacementProgressPacket(FriendlyByteBuf buf) {
+        this.pos = buf.readBlockPos();
+        this.phase = buf.readByte();
+        this.syncGameTime = buf.readVarLong();
+        this.remaining = buf.readVarInt();
+        this.total = buf.readVarInt();
+        this.rate = buf.readFloat();
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeBlockPos(pos);
+        buf.writeByte(phase);
+        buf.writeVarLong(syncGameTime);
+        buf.writeVarInt(remaining);
+        buf.writeVarInt(total);
+        buf.writeFloat(rate);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            ClientLevel level = Minecraft.getInstance().level;
+            if (level != null) {
+                BlockEntity be = level.getBlockEntity(pos);
+                if (be instanceof PrinterBlockEntity printerBE) {
+                    printerBE.setClientProgress(phase, syncGameTime, remaining, total, rate);
+                }
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
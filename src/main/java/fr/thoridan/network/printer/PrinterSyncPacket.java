@@ -0,0 +1,120 @@
+package fr.thoridan.network.printer;
+
+import fr.thoridan.block.PrinterBlockEntity;
+import fr.thoridan.network.ModNetworking;
+import fr.thoridan.network.PayloadCodec;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.block.Rotation;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraftforge.network.NetworkEvent;
+
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * Sent from server -> client with only the parts of a printer that changed since the last sync:
+ * energy and FE in/out of the last tick, a set of inventory slots and/or the user-chosen target, rotation and schematic.
+ */
+public class PrinterSyncPacket {
+    public static final int ENERGY = 1;
+    public static final int SLOTS = 2;
+    public static final int CONFIG = 4;
+
+    private final BlockPos pos;
+    private final int changes;
+    private final int energy;
+    private final int energyIn;
+    private final int energyOut;
+    private final Int2ObjectMap<ItemStack> slots;
+    @Nullable private final BlockPos targetPos;
+    @Nullable private final Rotation rotation;
+    @Nullable private final String schematicName;
+
+    /**
+     * @param changes Bit set of {@link #ENERGY}, {@link #SLOTS} and {@link #CONFIG}, only those parts are written.
+     */
+    public PrinterSyncPacket(BlockPos pos, int changes, int energy, int energyIn, int energyOut, Int2ObjectMap<ItemStack> slots,
+                             @Nullable BlockPos targetPos, @Nullable Rotation rotation, @Nullable String schematicName) {
+        this.pos = pos;
+        this.changes = changes;
+        this.energy = energy;
+        this.energyIn = energyIn;
+        this.energyOut = energyOut;
+        this.slots = slots;
+        this.targetPos = targetPos;
+        this.rotation = rotation;
+        this.schematicName = schematicName;
+    }
+
+    public PrinterSyncPacket(FriendlyByteBuf buf) {
+        this.pos = buf.readBlockPos();
+        this.changes = buf.readByte();
+        boolean hasEnergy = (changes & ENERGY) != 0;
+        this.energy = hasEnergy ? buf.readVarInt() : 0;
+        this.energyIn = hasEnergy ? buf.readVarInt() : 0;
+        this.energyOut = hasEnergy ? buf.readVarInt() : 0;
+        this.slots = new Int2ObjectOpenHashMap<>();
+        if ((changes & SLOTS) != 0) {
+            FriendlyByteBuf slotData = PayloadCodec.read(buf);
+            int count = slotData.readVarInt();
+            for (int i = 0; i < count; i++) {
+                slots.put(slotData.readVarInt(), slotData.readItem());
+            }
+        }
+        if ((changes & CONFIG) != 0) {
+            this.targetPos = buf.readNullable(FriendlyByteBuf::readBlockPos);
+            this.rotation = buf.readNullable(b -> b.readEnum(Rotation.class));
+            this.schematicName = buf.readNullable(FriendlyByteBuf::readUtf);
+        } else {
+            this.targetPos = null;
+            this.rotation = null;
+            this.schematicName = null;
+        }
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeBlockPos(pos);
+        buf.writeByte(changes);
+        if ((changes & ENERGY) != 0) {
+            buf.writeVarInt(energy);
+            buf.writeVarInt(energyIn);
+            buf.writeVarInt(energyOut);
+        }
+        if ((changes & SLOTS) != 0) {
+            // Stacks with NBT (shulker boxes, enchanted books) add up fast, compress them as one payload
+            ModNetworking.PAYLOAD_CODEC.write(buf, slotData -> {
+                slotData.writeVarInt(slots.size());
+                for (Int2ObjectMap.Entry<ItemStack> entry : slots.int2ObjectEntrySet()) {
+                    slotData.writeVarInt(entry.getIntKey());
+                    slotData.writeItem(entry.getValue());
+                }
+            });
+        }
+        if ((changes & CONFIG) != 0) {
+            buf.writeNullable(targetPos, FriendlyByteBuf::writeBlockPos);
+            buf.writeNullable(rotation, FriendlyByteBuf::writeEnum);
+            buf.writeNullable(schematicName, FriendlyByteBuf::writeUtf);
+        }
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            ClientLevel level = Minecraft.getInstance().level;
+            if (level != null) {
+                BlockEntity be = level.getBlockEntity(pos);
+                if (be instanceof PrinterBlockEntity printerBE) {
+                    if ((changes & ENERGY) != 0) printerBE.setClientEnergy(energy, energyIn, energyOut);
+                    if ((changes & SLOTS) != 0) printerBE.setClientSlots(slots);
+                    if ((changes & CONFIG) != 0) printerBE.setClientConfig(targetPos, rotation, schematicName);
+                }
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
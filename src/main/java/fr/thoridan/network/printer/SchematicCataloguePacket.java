@@ -0,0 +1,84 @@
+package fr.thoridan.network.printer;
+
+import fr.thoridan.client.printer.ui.ClientSchematicCatalogue;
+import fr.thoridan.network.ModNetworking;
+import fr.thoridan.network.PayloadCodec;
+import fr.thoridan.schematic.SchematicCatalogue;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.item.Item;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sent from server -> client with changes to the {@link SchematicCatalogue}.
+ * A snapshot starts with {@code reset} set, which drops everything the client knew; the following packets
+ * of the snapshot and every later delta only add, replace or remove entries.
+ */
+public class SchematicCataloguePacket {
+    private final boolean reset;
+    private final List<SchematicCatalogue.Entry> entries;
+    private final List<String> removed;
+
+    public SchematicCataloguePacket(boolean reset, List<SchematicCatalogue.Entry> entries, List<String> removed) {
+        this.reset = reset;
+        this.entries = entries;
+        this.removed = removed;
+    }
+
+    public SchematicCataloguePacket(FriendlyByteBuf buf) {
+        reset = buf.readBoolean();
+        FriendlyByteBuf data = PayloadCodec.read(buf);
+        int count = data.readVarInt();
+        entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = data.readUtf(256);
+            String hash = data.readUtf(64);
+            int blockCount = data.readVarInt();
+            int sizeX = data.readVarInt(), sizeY = data.readVarInt(), sizeZ = data.readVarInt();
+            int itemCount = data.readVarInt();
+            Map<Item, Integer> items = new HashMap<>();
+            for (int j = 0; j < itemCount; j++) {
+                Item item = data.readById(BuiltInRegistries.ITEM);
+                int amount = data.readVarInt();
+                if (item != null) {
+                    items.put(item, amount);
+                }
+            }
+            entries.add(new SchematicCatalogue.Entry(name, hash, blockCount, sizeX, sizeY, sizeZ, Collections.unmodifiableMap(items)));
+        }
+        removed = buf.readList(b -> b.readUtf(256));
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeBoolean(reset);
+        ModNetworking.PAYLOAD_CODEC.write(buf, data -> {
+            data.writeVarInt(entries.size());
+            for (SchematicCatalogue.Entry entry : entries) {
+                data.writeUtf(entry.name(), 256);
+                data.writeUtf(entry.hash() != null ? entry.hash() : "", 64);
+                data.writeVarInt(entry.blockCount());
+                data.writeVarInt(entry.sizeX());
+                data.writeVarInt(entry.sizeY());
+                data.writeVarInt(entry.sizeZ());
+                data.writeVarInt(entry.requiredItems().size());
+                entry.requiredItems().forEach((item, amount) -> {
+                    data.writeId(BuiltInRegistries.ITEM, item); // Registry ids are synced by Forge on login
+                    data.writeVarInt(amount);
+                });
+            }
+        });
+        buf.writeCollection(removed, (b, name) -> b.writeUtf(name, 256));
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> ClientSchematicCatalogue.apply(reset, entries, removed));
+        ctx.get().setPacketHandled(true);
+    }
+}
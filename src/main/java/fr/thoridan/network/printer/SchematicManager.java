@@ -1,78 +1,244 @@
 package fr.thoridan.network.printer;
 
+import com.mojang.logging.LogUtils;
 import fr.thoridan.Techutilities;
-import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.NbtIo;
-import net.minecraftforge.fml.loading.FMLPaths;
+import fr.thoridan.network.ModNetworking;
+import fr.thoridan.printer.PrinterConfig;
+import fr.thoridan.schematic.CompiledSchematic;
+import fr.thoridan.schematic.SchematicCatalogue;
+import fr.thoridan.schematic.SchematicIO;
+import fr.thoridan.schematic.SchematicReader;
+import fr.thoridan.schematic.SchematicRegistry;
+import fr.thoridan.schematic.SchematicStore;
+import net.minecraft.core.HolderGetter;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.network.PacketDistributor;
+import org.slf4j.Logger;
 
-import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Server side of the schematic upload protocol.
+ * <p>
+ * An upload starts with a manifest (size and SHA-256). If the {@link SchematicStore} already holds that content,
+ * the name is simply aliased to it and the upload is done without a single chunk. Otherwise chunks are written
+ * as they arrive, straight from the packet buffer into a temp file under {@code schematics/.uploads}, tracked by an
+ * {@link UploadSession}. The temp file is named after the player, the content hash and the name, so an interrupted
+ * upload of the same file resumes from the last complete chunk on disk. Once every byte is there, the file is synced,
+ * checked against the hash, validated, compiled and atomically moved into the store: printers never see a
+ * half-written schematic. All file work runs on the {@link SchematicIO} thread, and results come back to the
+ * server thread before anything is acknowledged. Every stored name is published in the {@link SchematicCatalogue}.
+ * Every step is acknowledged with an {@link UploadAckPacket}, which is what drives the client's send window.
+ */
 public class SchematicManager {
-    // Tracks all in-progress uploads by (player -> (schematicName -> partial data))
-    private static final Map<UUID, Map<String, ByteArrayOutputStream>> UPLOADS = new HashMap<>();
+    private static final Logger LOGGER = LogUtils.getLogger();
+    public static final int MAX_SCHEMATIC_SIZE = 1000000;
 
     /**
-     * Store one chunk of uploaded data.
-     * @param maxSize  The maximum total byte size of the final schematic.
+     * Opens (or resumes) an upload, then tells the client which chunk to send first.
      */
-    public static void storeChunk(UUID playerUUID, String name, int index, int total, byte[] data, int maxSize) {
-        // Get or create the ByteArrayOutputStream for this player & schematic
-        var playerMap = UPLOADS.computeIfAbsent(playerUUID, k -> new HashMap<>());
-        var outputStream = playerMap.computeIfAbsent(name, k -> new ByteArrayOutputStream());
-
-        // Before writing the chunk, check if we’d exceed the limit
-        if (outputStream.size() + data.length > maxSize) {
-            Techutilities.broadcastServerMessage("Rejected upload: size limit exceeded for " + name, false);
-            // Optionally remove partial upload data
-            playerMap.remove(name);
+    public static void startUpload(ServerPlayer player, String name, long size, String sha256, int chunkSize) {
+        if (!isValidName(name) || size <= 0 || size > MAX_SCHEMATIC_SIZE
+                || chunkSize <= 0 || chunkSize > UploadSchematicPacket.MAX_CHUNK_SIZE || !isValidHash(sha256)) {
+            Techutilities.broadcastServerMessage("Rejected upload: invalid manifest for " + name, false);
+            ack(player, name, 0, UploadAckPacket.FAILED);
             return;
         }
 
-        //TODO : Add more security
+        UUID owner = player.getUUID();
+        MinecraftServer server = player.server;
+        UploadSession previous = UploadSessionManager.get(owner, name);
+        if (previous != null) {
+            UploadSessionManager.release(previous, true);
+        }
+
+        // "Have it": the content is already stored, the name only needs to point at it
+        HolderGetter<Block> blockLookup = server.registryAccess().lookupOrThrow(Registries.BLOCK);
+        SchematicCatalogue.Entry known = SchematicCatalogue.findByHash(sha256); // Usually described already, under another name
+        SchematicIO.submit(() -> {
+            if (!SchematicStore.contains(sha256)) return Optional.<SchematicCatalogue.Entry>empty();
+            link(name, sha256);
+            return Optional.of(known != null ? known.withName(name) : SchematicCatalogue.describeStored(name, sha256, blockLookup));
+        }).whenCompleteAsync((stored, error) -> {
+            if (error != null) {
+                LOGGER.warn("Could not link schematic '{}'", name, error);
+                ack(server, owner, name, 0, UploadAckPacket.FAILED);
+            } else if (stored.isPresent()) {
+                SchematicCatalogue.put(stored.get());
+                ack(server, owner, name, 0, UploadAckPacket.DONE);
+            } else {
+                openSession(server, owner, name, size, sha256, chunkSize);
+            }
+        }, server);
+    }
 
-        // Write the chunk
-        try {
-            outputStream.write(data);
-        } catch (IOException e) {
-            e.printStackTrace();
-            // Optionally remove partial upload data
-            playerMap.remove(name);
+    private static void openSession(MinecraftServer server, UUID owner, String name, long size, String sha256, int chunkSize) {
+        // Keyed by name too: two uploads of the same content under different names must not share a file
+        String nameKey = SchematicRegistry.hash(name.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        Path partFile = getUploadsFolder().resolve(owner + "-" + sha256 + "-" + nameKey + ".part");
+        UploadSession session = UploadSessionManager.open(owner, name, size, sha256, chunkSize, partFile);
+        if (session == null) {
+            ack(server, owner, name, 0, UploadAckPacket.FAILED); // Over the upload limits
+            return;
+        }
+
+        SchematicIO.submit(session::resume).whenCompleteAsync((nextChunk, error) -> {
+            if (UploadSessionManager.get(owner, name) != session) return; // Replaced or closed meanwhile
+            if (error != null) {
+                LOGGER.warn("Could not start upload of '{}'", name, error);
+                UploadSessionManager.release(session, true);
+                ack(server, owner, name, 0, UploadAckPacket.FAILED);
+            } else if (nextChunk >= session.totalChunks) {
+                complete(server, session);
+            } else {
+                ack(server, owner, name, nextChunk, UploadAckPacket.CONTINUE);
+            }
+        }, server);
+    }
+
+    /**
+     * Queues one chunk to be written at its place in the temp file, and finishes the upload after the last one.
+     */
+    public static void storeChunk(ServerPlayer player, String name, int index, ByteBuffer data) {
+        UUID owner = player.getUUID();
+        MinecraftServer server = player.server;
+        UploadSession session = UploadSessionManager.get(owner, name);
+        if (session == null) {
+            ack(player, name, 0, UploadAckPacket.FAILED); // No manifest, or the upload was closed
             return;
         }
+        session.touch();
 
-        // If index+1 == total, we received the final chunk
-        if (index + 1 == total) {
-            // We have all bytes
-            byte[] fullBytes = outputStream.toByteArray();
-
-            // Write them to a server file so the usual loadSchematicData can find it
-            File schematicsFolder = new File(FMLPaths.GAMEDIR.get().toFile(), "schematics");
-            schematicsFolder.mkdirs(); // ensure the folder exists
-            File serverFile = new File(schematicsFolder, name);
-
-            try (FileOutputStream fos = new FileOutputStream(serverFile)) {
-                fos.write(fullBytes);
-                fos.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // Next missing chunk, or -1 if the chunk does not belong to this upload
+        SchematicIO.submit(() -> session.write(index, data) ? session.nextMissing() : -1).whenCompleteAsync((nextChunk, error) -> {
+            if (UploadSessionManager.get(owner, name) != session) return; // Replaced, closed or already complete
+            if (error != null) {
+                LOGGER.warn("Could not write upload of '{}'", name, error);
+                UploadSessionManager.release(session, true); // Keep what is on disk, the client can resume
+                ack(server, owner, name, 0, UploadAckPacket.FAILED);
+            } else if (nextChunk < 0) {
+                Techutilities.broadcastServerMessage("Rejected upload: bad chunk for " + name, false);
+                UploadSessionManager.release(session, false);
+                ack(server, owner, name, 0, UploadAckPacket.FAILED);
+            } else if (nextChunk >= session.totalChunks) {
+                complete(server, session);
+            } else {
+                ack(server, owner, name, nextChunk, UploadAckPacket.CONTINUE);
             }
+        }, server);
+    }
+
+    /**
+     * Syncs, verifies, validates and compiles a complete upload on the I/O thread, then stores it and
+     * points its name at it. Only the final ack runs on the server thread.
+     */
+    private static void complete(MinecraftServer server, UploadSession session) {
+        UploadSessionManager.remove(session);
+        HolderGetter<Block> blockLookup = server.registryAccess().lookupOrThrow(Registries.BLOCK);
+        int maxBlocks = PrinterConfig.UPLOAD_MAX_BLOCKS.get();
+        int maxExtent = PrinterConfig.UPLOAD_MAX_EXTENT.get();
 
-            // Now your server has "schematics/<name>" with the full content.
-            // So next time loadSchematicData(...) is called, it will succeed.
+        SchematicIO.submit(() -> {
+            try {
+                session.finish();
+                if (Files.size(session.partFile) != session.size || !SchematicRegistry.hash(session.partFile).equals(session.sha256)) {
+                    throw new IOException("Checksum mismatch");
+                }
+                SchematicReader.Columns columns = SchematicReader.read(session.partFile.toFile(), maxBlocks); // Rejects oversized files before allocating
+                validate(columns, maxBlocks, maxExtent);
+                CompiledSchematic compiled = CompiledSchematic.compile(columns, blockLookup);
 
-            // (Optional) parse it in memory as well
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(fullBytes)) {
-                CompoundTag nbt = NbtIo.readCompressed(bais);
-                // Use or store 'nbt' if you want
-            } catch (IOException e) {
-                e.printStackTrace();
+                SchematicStore.put(session.partFile, session.sha256);
+                SchematicRegistry.put(session.sha256, compiled);
+                link(session.name, session.sha256);
+                return SchematicCatalogue.describe(session.name, session.sha256, compiled);
+            } catch (Throwable e) {
+                Files.deleteIfExists(session.partFile); // Corrupt or invalid, never resume from it
+                throw e;
+            }
+        }).whenCompleteAsync((entry, error) -> {
+            if (error != null) {
+                LOGGER.warn("Rejected upload of '{}'", session.name, error);
+                Techutilities.broadcastServerMessage("Rejected upload: " + session.name + " is not a valid schematic", false);
+                ack(server, session.owner, session.name, 0, UploadAckPacket.FAILED);
+            } else {
+                SchematicCatalogue.put(entry);
+                ack(server, session.owner, session.name, session.totalChunks, UploadAckPacket.DONE);
             }
+        }, server);
+    }
 
-            playerMap.remove(name);
+    /**
+     * Sanity checks on the decoded structure, before anything is compiled or stored.
+     * Palette indices are checked by {@link CompiledSchematic#compile}.
+     */
+    private static void validate(SchematicReader.Columns columns, int maxBlocks, int maxExtent) throws IOException {
+        int count = columns.blockCount();
+        if (count == 0 || columns.palette().isEmpty()) {
+            throw new IOException("Empty schematic");
+        }
+        if (count > maxBlocks) {
+            throw new IOException("Too many blocks: " + count);
+        }
+        int sizeX = columns.sizeX(), sizeY = columns.sizeY(), sizeZ = columns.sizeZ();
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0 || sizeX > maxExtent || sizeY > maxExtent || sizeZ > maxExtent) {
+            throw new IOException("Invalid size: " + sizeX + "x" + sizeY + "x" + sizeZ);
+        }
+        int[] xs = columns.x(), ys = columns.y(), zs = columns.z();
+        for (int i = 0; i < count; i++) {
+            if (xs[i] < 0 || xs[i] >= sizeX || ys[i] < 0 || ys[i] >= sizeY || zs[i] < 0 || zs[i] >= sizeZ) {
+                throw new IOException("Block " + i + " is outside the schematic bounds");
+            }
         }
     }
-}
 
+    private static void link(String name, String sha256) throws IOException {
+        SchematicStore.link(name, sha256);
+        SchematicRegistry.invalidate(name); // Printers must not reuse the previous content of this name
+    }
+
+    private static void ack(ServerPlayer player, String name, int nextChunk, byte status) {
+        ModNetworking.INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), new UploadAckPacket(name, nextChunk, status));
+    }
+
+    private static void ack(MinecraftServer server, UUID owner, String name, int nextChunk, byte status) {
+        ServerPlayer player = server.getPlayerList().getPlayer(owner);
+        if (player != null) { // Logged out while the I/O thread was busy
+            ack(player, name, nextChunk, status);
+        }
+    }
+
+    /**
+     * Plain file name with a schematic extension: no path separators, so uploads cannot escape the folder.
+     */
+    public static boolean isValidName(String name) {
+        return (name.endsWith(".nbt") || name.endsWith(".schematic"))
+                && !name.contains("/") && !name.contains("\\") && !name.contains("..")
+                && !name.startsWith(".");
+    }
+
+    /**
+     * Lowercase hex only, as produced by {@link SchematicRegistry#hash}: the hash is compared as a string and names stored files.
+     */
+    private static boolean isValidHash(String sha256) {
+        if (sha256.length() != 64) return false;
+        for (int i = 0; i < sha256.length(); i++) {
+            char c = sha256.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+
+    static Path getUploadsFolder() {
+        return SchematicRegistry.getSchematicsFolder().toPath().resolve(".uploads");
+    }
+}
@@ -0,0 +1,44 @@
+package fr.thoridan.network.printer;
+
+import fr.thoridan.client.printer.upload.SchematicUploader;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent from server -> client to acknowledge upload progress. {@code nextChunk} is the index of the
+ * first chunk the server does not have yet; every chunk before it is safely on disk.
+ */
+public class UploadAckPacket {
+    public static final byte CONTINUE = 0;
+    public static final byte DONE = 1;
+    public static final byte FAILED = 2;
+
+    private final String schematicName;
+    private final int nextChunk;
+    private final byte status;
+
+    public UploadAckPacket(String schematicName, int nextChunk, byte status) {
+        this.schematicName = schematicName;
+        this.nextChunk = nextChunk;
+        this.status = status;
+    }
+
+    public UploadAckPacket(FriendlyByteBuf buf) {
+        this.schematicName = buf.readUtf(256);
+        this.nextChunk = buf.readVarInt();
+        this.status = buf.readByte();
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeUtf(schematicName, 256);
+        buf.writeVarInt(nextChunk);
+        buf.writeByte(status);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> SchematicUploader.onAck(schematicName, nextChunk, status));
+        ctx.get().setPacketHandled(true);
+    }
+}
@@ -1,65 +1,54 @@
 package fr.thoridan.network.printer;
 
+import fr.thoridan.network.ModNetworking;
+import fr.thoridan.network.PayloadCodec;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.network.NetworkEvent;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
-
+/**
+ * Sent from client -> server with one chunk of an upload announced by an {@link UploadStartPacket}.
+ * The data is read straight from the file into the buffer and goes through the {@link PayloadCodec}.
+ */
 public class UploadSchematicPacket {
+    /**
+     * Serverbound custom payloads are limited to 32767 bytes. Besides the chunk, a packet holds the channel
+     * discriminator, the name (at most 256 chars, under 800 bytes), the index and the payload header (a few bytes).
+     */
+    public static final int MAX_CHUNK_SIZE = 30 * 1024;
+
     private final String schematicName;
     private final int chunkIndex;
-    private final int totalChunks;
-    private final byte[] chunkData;
-    private static final int MAX_SCHEMATIC_SIZE = 1000000; // Limit: e.g. 1 MB per schematic
+    private final ByteBuffer chunkData;
 
-    public UploadSchematicPacket(String schematicName, int chunkIndex, int totalChunks, byte[] chunkData) {
+    public UploadSchematicPacket(String schematicName, int chunkIndex, ByteBuffer chunkData) {
         this.schematicName = schematicName;
         this.chunkIndex = chunkIndex;
-        this.totalChunks = totalChunks;
         this.chunkData = chunkData;
     }
 
     public UploadSchematicPacket(FriendlyByteBuf buf) {
-        schematicName = buf.readUtf(32767);
-        chunkIndex = buf.readInt();
-        totalChunks = buf.readInt();
-        int dataLength = buf.readInt();
-        chunkData = new byte[dataLength];
-        buf.readBytes(chunkData);
+        schematicName = buf.readUtf(256);
+        chunkIndex = buf.readVarInt();
+        FriendlyByteBuf data = PayloadCodec.read(buf, MAX_CHUNK_SIZE); // Checked before the chunk is allocated or inflated
+        chunkData = data.nioBuffer(); // Wraps the decoded array, no copy
     }
 
     public void toBytes(FriendlyByteBuf buf) {
-        buf.writeUtf(schematicName);
-        buf.writeInt(chunkIndex);
-        buf.writeInt(totalChunks);
-        buf.writeInt(chunkData.length);
-        buf.writeBytes(chunkData);
+        buf.writeUtf(schematicName, 256);
+        buf.writeVarInt(chunkIndex);
+        // Most schematics are gzip already and go out raw, uncompressed .nbt files shrink a lot
+        ModNetworking.PAYLOAD_CODEC.write(buf, data -> data.writeBytes(chunkData.duplicate())); // Keep the packet re-encodable
     }
 
     public void handle(Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
             ServerPlayer player = ctx.get().getSender();
             if (player != null) {
-                // 1) Check extension
-                //    (We keep it simple: must end with .nbt OR .schematic)
-                String lowerCaseName = schematicName.toLowerCase();
-                if (!(lowerCaseName.endsWith(".nbt") || lowerCaseName.endsWith(".schematic"))) {
-                    // Optionally, send a chat message or log it
-                    System.out.println("Rejected upload: invalid extension for " + schematicName);
-                    return; // Stop here
-                }
-
-                // 2) Call SchematicManager, which does the main chunk handling
-                SchematicManager.storeChunk(
-                        player.getUUID(),
-                        schematicName,
-                        chunkIndex,
-                        totalChunks,
-                        chunkData,
-                        MAX_SCHEMATIC_SIZE
-                );
+                SchematicManager.storeChunk(player, schematicName, chunkIndex, chunkData);
             }
         });
         ctx.get().setPacketHandled(true);
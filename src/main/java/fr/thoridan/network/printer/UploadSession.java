@@ -0,0 +1,135 @@
+package fr.thoridan.network.printer;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.Util;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * One schematic upload in progress: the temp file it is written into and the chunks received so far.
+ * <p>
+ * Chunks are written at their own offset and recorded in a bitset, so duplicates are dropped and out of order
+ * chunks land in the right place. Acks report the first missing chunk. When a session is closed before the end,
+ * the temp file is cut back to its complete prefix, which is what a later session resumes from.
+ * <p>
+ * Only {@link #touch()} and {@link #idleMillis(long)} are used on the server thread; everything touching the file
+ * or the bitset runs on the {@link fr.thoridan.schematic.SchematicIO} thread.
+ */
+public final class UploadSession {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    final UUID owner;
+    final String name;
+    final long size;
+    final String sha256;
+    final int chunkSize;
+    final int totalChunks;
+    final Path partFile;
+    private final BitSet received;
+    private FileChannel channel;
+    private long lastActivity;
+
+    UploadSession(UUID owner, String name, long size, String sha256, int chunkSize, Path partFile) {
+        this.owner = owner;
+        this.name = name;
+        this.size = size;
+        this.sha256 = sha256;
+        this.chunkSize = chunkSize;
+        this.totalChunks = (int) ((size + chunkSize - 1) / chunkSize);
+        this.partFile = partFile;
+        this.received = new BitSet(totalChunks);
+        this.lastActivity = Util.getMillis();
+    }
+
+    /**
+     * Opens the temp file, keeping the complete chunks a previous session left in it.
+     *
+     * @return Index of the first missing chunk.
+     */
+    int resume() throws IOException {
+        Files.createDirectories(partFile.getParent());
+        channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+
+        // Resume after the last complete chunk; a trailing partial chunk is written again
+        long existing = Math.min(channel.size(), size);
+        int complete = existing == size ? totalChunks : (int) (existing / chunkSize);
+        channel.truncate(Math.min(existing, (long) complete * chunkSize));
+        received.set(0, complete);
+        return complete;
+    }
+
+    /**
+     * Writes a chunk at its offset. Chunks already received are ignored.
+     *
+     * @return false if the chunk does not belong to this upload (bad index or length).
+     */
+    boolean write(int index, ByteBuffer data) throws IOException {
+        if (index < 0 || index >= totalChunks) return false;
+        long offset = (long) index * chunkSize;
+        if (data.remaining() != Math.min(chunkSize, size - offset)) return false;
+        if (received.get(index)) return true;
+
+        long position = offset;
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+        received.set(index);
+        return true;
+    }
+
+    /**
+     * Index of the first chunk not received yet; every chunk before it is on disk.
+     */
+    int nextMissing() {
+        return received.nextClearBit(0);
+    }
+
+    /**
+     * Records activity, so the session is not closed as idle.
+     */
+    void touch() {
+        lastActivity = Util.getMillis();
+    }
+
+    long idleMillis(long now) {
+        return now - lastActivity;
+    }
+
+    /**
+     * Syncs the temp file to disk and closes it, once every chunk is there.
+     */
+    void finish() throws IOException {
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes the temp file, either keeping its complete prefix for a later resume or deleting it.
+     */
+    void close(boolean keepPart) {
+        try {
+            if (channel != null && channel.isOpen()) {
+                if (keepPart) {
+                    channel.truncate(Math.min(size, (long) nextMissing() * chunkSize));
+                }
+                channel.close();
+            }
+            if (!keepPart) {
+                Files.deleteIfExists(partFile);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not close upload of '{}'", name, e);
+        }
+    }
+}
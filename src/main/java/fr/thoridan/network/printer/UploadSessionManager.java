@@ -0,0 +1,209 @@
+package fr.thoridan.network.printer;
+
+import com.mojang.logging.LogUtils;
+import fr.thoridan.Techutilities;
+import fr.thoridan.printer.PrinterConfig;
+import fr.thoridan.schematic.SchematicIO;
+import net.minecraft.Util;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Table of the {@link UploadSession}s in progress, with the limits that keep it bounded:
+ * a number of sessions per player, a total of bytes in flight for the whole server, and an idle timeout.
+ * Sessions are closed when their player logs out, and everything is released when the server stops.
+ * Closed sessions keep their complete chunks on disk, so the client can resume them later; those part files are
+ * swept on server start and every minute, by age and by a total size quota, so they cannot pile up either.
+ * The table itself is server thread only; closing and deleting files is queued on the {@link SchematicIO} thread.
+ */
+@Mod.EventBusSubscriber(modid = Techutilities.MODID)
+public final class UploadSessionManager {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int EVICTION_INTERVAL_TICKS = 20;
+    private static final int SWEEP_INTERVAL_EVICTIONS = 60; // About a minute
+
+    private static final Map<UUID, Map<String, UploadSession>> SESSIONS = new HashMap<>();
+    private static long bytesInFlight = 0; // Declared size of every open session
+    private static int ticks = 0;
+    private static int evictions = 0;
+
+    private UploadSessionManager() {}
+
+    /**
+     * Registers a session, replacing the player's previous session for the same name.
+     * Its file is only opened by {@link UploadSession#resume()}, on the I/O thread.
+     *
+     * @return The new session, or null if it would exceed the session or byte limits.
+     */
+    public static UploadSession open(UUID owner, String name, long size, String sha256, int chunkSize, Path partFile) {
+        UploadSession previous = get(owner, name);
+        if (previous != null) {
+            release(previous, true);
+        }
+
+        Map<String, UploadSession> sessions = SESSIONS.get(owner);
+        if (sessions != null && sessions.size() >= PrinterConfig.UPLOAD_SESSIONS_PER_PLAYER.get()) {
+            Techutilities.broadcastServerMessage("Rejected upload: too many uploads in progress for " + name, false);
+            return null;
+        }
+        if (bytesInFlight + size > PrinterConfig.UPLOAD_BYTES_IN_FLIGHT.get()) {
+            Techutilities.broadcastServerMessage("Rejected upload: server upload capacity reached for " + name, false);
+            return null;
+        }
+
+        UploadSession session = new UploadSession(owner, name, size, sha256, chunkSize, partFile);
+        SESSIONS.computeIfAbsent(owner, k -> new HashMap<>()).put(name, session);
+        bytesInFlight += size;
+        return session;
+    }
+
+    /**
+     * The session currently registered for this player and name, or null.
+     */
+    public static UploadSession get(UUID owner, String name) {
+        Map<String, UploadSession> sessions = SESSIONS.get(owner);
+        return sessions != null ? sessions.get(name) : null;
+    }
+
+    /**
+     * Removes a session from the table without touching its file, e.g. once it is complete.
+     */
+    public static void remove(UploadSession session) {
+        Map<String, UploadSession> sessions = SESSIONS.get(session.owner);
+        if (sessions != null && sessions.remove(session.name, session)) {
+            bytesInFlight -= session.size;
+            if (sessions.isEmpty()) {
+                SESSIONS.remove(session.owner);
+            }
+        }
+    }
+
+    /**
+     * Removes and closes a session.
+     *
+     * @param keepPart Whether the complete chunks stay on disk for a later resume.
+     */
+    public static void release(UploadSession session, boolean keepPart) {
+        remove(session);
+        SchematicIO.EXECUTOR.execute(() -> session.close(keepPart)); // After the writes already queued
+    }
+
+    private static void releaseAll(Map<String, UploadSession> sessions) {
+        if (sessions == null) return;
+        for (UploadSession session : sessions.values()) {
+            bytesInFlight -= session.size;
+            SchematicIO.EXECUTOR.execute(() -> session.close(true));
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ++ticks < EVICTION_INTERVAL_TICKS) return;
+        ticks = 0;
+
+        long now = Util.getMillis();
+        long timeout = PrinterConfig.UPLOAD_IDLE_SECONDS.get() * 1000L;
+        Iterator<Map<String, UploadSession>> players = SESSIONS.values().iterator();
+        while (players.hasNext()) {
+            Map<String, UploadSession> sessions = players.next();
+            Iterator<UploadSession> it = sessions.values().iterator();
+            while (it.hasNext()) {
+                UploadSession session = it.next();
+                if (session.idleMillis(now) > timeout) {
+                    it.remove();
+                    bytesInFlight -= session.size;
+                    SchematicIO.EXECUTOR.execute(() -> session.close(true));
+                }
+            }
+            if (sessions.isEmpty()) {
+                players.remove();
+            }
+        }
+
+        if (++evictions >= SWEEP_INTERVAL_EVICTIONS) {
+            evictions = 0;
+            sweepPartFiles();
+        }
+    }
+
+    /**
+     * Queues a sweep of the part files no open session uses: those older than the configured age are deleted,
+     * then the oldest ones until the folder fits in the configured size.
+     */
+    private static void sweepPartFiles() {
+        Set<Path> open = new HashSet<>();
+        SESSIONS.values().forEach(sessions -> sessions.values().forEach(session -> open.add(session.partFile)));
+        long maxAge = PrinterConfig.UPLOAD_PART_MAX_AGE_HOURS.get() * 3600_000L;
+        long maxBytes = PrinterConfig.UPLOAD_PART_MAX_BYTES.get();
+        Path folder = SchematicManager.getUploadsFolder();
+        // Queued after the closes already pending, and before the resumes of sessions opened later
+        SchematicIO.EXECUTOR.execute(() -> sweep(folder, open, maxAge, maxBytes));
+    }
+
+    private record PartFile(Path path, long size, long lastModified) {}
+
+    private static void sweep(Path folder, Set<Path> open, long maxAge, long maxBytes) {
+        if (!Files.isDirectory(folder)) return;
+        List<PartFile> parts = new ArrayList<>();
+        long total = 0;
+        try {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                for (Path path : stream) {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile()) continue;
+                    total += attributes.size();
+                    if (!open.contains(path)) {
+                        parts.add(new PartFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            }
+
+            parts.sort(Comparator.comparingLong(PartFile::lastModified)); // Oldest first
+            long now = System.currentTimeMillis();
+            for (PartFile part : parts) {
+                if (now - part.lastModified() <= maxAge && total <= maxBytes) break;
+                Files.deleteIfExists(part.path());
+                total -= part.size();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not sweep unfinished uploads", e);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        releaseAll(SESSIONS.remove(event.getEntity().getUUID()));
+    }
+
+    @SubscribeEvent
+    public static void onServerStarted(ServerStartedEvent event) {
+        sweepPartFiles();
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        SESSIONS.values().forEach(UploadSessionManager::releaseAll);
+        SESSIONS.clear();
+        bytesInFlight = 0;
+    }
+}
@@ -0,0 +1,50 @@
+package fr.thoridan.network.printer;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent from client -> server to announce an upload: the manifest of the file about to be sent in chunks.
+ * The server answers with an {@link UploadAckPacket} telling which chunk to send first, which lets
+ * an interrupted upload of the same content resume where it stopped.
+ */
+public class UploadStartPacket {
+    private final String schematicName;
+    private final long size;
+    private final String sha256;
+    private final int chunkSize;
+
+    public UploadStartPacket(String schematicName, long size, String sha256, int chunkSize) {
+        this.schematicName = schematicName;
+        this.size = size;
+        this.sha256 = sha256;
+        this.chunkSize = chunkSize;
+    }
+
+    public UploadStartPacket(FriendlyByteBuf buf) {
+        this.schematicName = buf.readUtf(256);
+        this.size = buf.readVarLong();
+        this.sha256 = buf.readUtf(64);
+        this.chunkSize = buf.readVarInt();
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeUtf(schematicName, 256);
+        buf.writeVarLong(size);
+        buf.writeUtf(sha256, 64);
+        buf.writeVarInt(chunkSize);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            ServerPlayer player = ctx.get().getSender();
+            if (player != null) {
+                SchematicManager.startUpload(player, schematicName, size, sha256, chunkSize);
+            }
+        });
+        ctx.get().setPacketHandled(true);
+    }
+}
@@ -0,0 +1,121 @@
+package fr.thoridan.printer;
+
+import fr.thoridan.Techutilities;
+import fr.thoridan.schematic.CompiledSchematic;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Rotation;
+
+import java.util.Comparator;
+
+/**
+ * Keeps the chunks of a running placement loaded, without ever loading them on the main thread.
+ * <p>
+ * Chunks are ticketed a few seconds of placement ahead of the cursor, so the chunk system has time to
+ * load them in the background, and released as soon as the cursor has passed their last block. A chunk
+ * the planner visits again for its deferred blocks is released in between and ticketed again ahead of that pass.
+ * Placement itself never touches a chunk that is not loaded yet: it waits for the ticket instead.
+ */
+public final class ChunkPreloader {
+    private static final TicketType<ChunkPos> TICKET = TicketType.create(Techutilities.MODID + ":printer", Comparator.comparingLong(ChunkPos::toLong));
+    private static final int TICKET_RADIUS = 1; // Also loads neighbours, which receive the border updates
+    private static final int LOOKAHEAD_TICKS = 60;
+
+    private final ServerLevel level;
+    private final long[] chunks; // Chunk of each run, in placement order
+    private final int[] firstIndex; // Placement position of the first block of each run
+    private final int[] lastIndex; // Placement position of the last block of each run
+    private final Long2IntOpenHashMap ticketed = new Long2IntOpenHashMap(); // Ticketed chunk -> placement position of its last ticketed block
+    private int nextRun = 0;
+
+    /**
+     * @param order Block indices in placement order, as computed by the {@link PlacementPlanner}.
+     */
+    public ChunkPreloader(ServerLevel level, CompiledSchematic schematic, int[] order, Rotation rotation, BlockPos target) {
+        this.level = level;
+
+        // Split the order into runs of consecutive blocks sharing a chunk. The planner visits a chunk once
+        // per pass, so a chunk with deferred blocks has two runs and is released between them.
+        LongArrayList runChunks = new LongArrayList();
+        IntArrayList runFirst = new IntArrayList();
+        IntArrayList runLast = new IntArrayList();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < order.length; i++) {
+            schematic.getRotatedPos(order[i], rotation, pos);
+            long chunk = ChunkPos.asLong((pos.getX() + target.getX()) >> 4, (pos.getZ() + target.getZ()) >> 4);
+            int run = runChunks.size() - 1;
+            if (run >= 0 && runChunks.getLong(run) == chunk) {
+                runLast.set(run, i);
+            } else {
+                runChunks.add(chunk);
+                runFirst.add(i);
+                runLast.add(i);
+            }
+        }
+
+        chunks = runChunks.toLongArray();
+        firstIndex = runFirst.toIntArray();
+        lastIndex = runLast.toIntArray();
+    }
+
+    /**
+     * Tickets the chunks placement will reach soon and releases the ones it is done with.
+     *
+     * @param cursor Placement position of the next block to place.
+     */
+    public void update(int cursor) {
+        int lookahead = cursor + PrinterConfig.BLOCKS_PER_TICK.get() * LOOKAHEAD_TICKS;
+        while (nextRun < chunks.length && firstIndex[nextRun] <= lookahead) {
+            long chunk = chunks[nextRun];
+            if (lastIndex[nextRun] >= cursor) {
+                // A chunk still ticketed for its previous run keeps that ticket until this run is done
+                if (!ticketed.containsKey(chunk)) {
+                    ChunkPos chunkPos = new ChunkPos(chunk);
+                    level.getChunkSource().addRegionTicket(TICKET, chunkPos, TICKET_RADIUS, chunkPos);
+                }
+                ticketed.put(chunk, lastIndex[nextRun]);
+            }
+            nextRun++;
+        }
+
+        ObjectIterator<Long2IntMap.Entry> it = ticketed.long2IntEntrySet().iterator();
+        while (it.hasNext()) {
+            Long2IntMap.Entry entry = it.next();
+            if (entry.getIntValue() < cursor) {
+                release(entry.getLongKey());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Whether the chunk holding this position is loaded and can be written without a synchronous load.
+     */
+    public boolean isReady(BlockPos pos) {
+        return level.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4) != null;
+    }
+
+    /**
+     * Releases every ticket, called when the placement ends or the printer goes away.
+     */
+    public void releaseAll() {
+        LongIterator it = ticketed.keySet().iterator();
+        while (it.hasNext()) {
+            release(it.nextLong());
+        }
+        ticketed.clear();
+    }
+
+    private void release(long chunk) {
+        ChunkPos chunkPos = new ChunkPos(chunk);
+        level.getChunkSource().removeRegionTicket(TICKET, chunkPos, TICKET_RADIUS, chunkPos);
+    }
+}
@@ -0,0 +1,71 @@
+package fr.thoridan.printer;
+
+import fr.thoridan.schematic.CompiledSchematic;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.*;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.PushReaction;
+
+/**
+ * Computes the order in which the blocks of a schematic are placed.
+ * <p>
+ * Blocks are grouped by chunk, so each chunk is finished before the next one starts, then sorted by
+ * Y ascending so falling blocks always land on their support. Blocks that hang on a neighbour
+ * (torches, rails, buttons, plants, ...) go in a second pass, once every solid block is in place.
+ * The order only depends on the schematic, rotation and target, so a saved cursor stays valid across restarts.
+ */
+public final class PlacementPlanner {
+    private PlacementPlanner() {}
+
+    /**
+     * @return Block indices of the schematic, in placement order.
+     */
+    public static int[] plan(CompiledSchematic schematic, Rotation rotation, BlockPos target) {
+        int count = schematic.blockCount();
+        int[] order = new int[count];
+        long[] chunks = new long[count];
+        int[] ys = new int[count];
+        boolean[] deferred = new boolean[count];
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < count; i++) {
+            schematic.getRotatedPos(i, rotation, pos);
+            int x = pos.getX() + target.getX();
+            int z = pos.getZ() + target.getZ();
+            order[i] = i;
+            chunks[i] = ChunkPos.asLong(x >> 4, z >> 4);
+            ys[i] = pos.getY();
+            deferred[i] = needsSupport(schematic.getState(i));
+        }
+
+        // Stable, so blocks sharing a chunk and layer keep their file order
+        IntArrays.mergeSort(order, (a, b) -> {
+            if (deferred[a] != deferred[b]) return deferred[a] ? 1 : -1;
+            if (chunks[a] != chunks[b]) return Long.compare(chunks[a], chunks[b]);
+            return Integer.compare(ys[a], ys[b]);
+        });
+        return order;
+    }
+
+    /**
+     * Whether the block breaks or fails to place without a neighbour to attach to.
+     */
+    private static boolean needsSupport(BlockState state) {
+        Block block = state.getBlock();
+        return block instanceof TorchBlock
+                || block instanceof BaseRailBlock
+                || block instanceof FaceAttachedHorizontalDirectionalBlock
+                || block instanceof LadderBlock
+                || block instanceof SignBlock
+                || block instanceof BushBlock
+                || block instanceof VineBlock
+                || block instanceof CarpetBlock
+                || block instanceof RedStoneWireBlock
+                || block instanceof DiodeBlock
+                || block instanceof BasePressurePlateBlock
+                || block instanceof DoorBlock
+                || state.getPistonPushReaction() == PushReaction.DESTROY;
+    }
+}
@@ -0,0 +1,69 @@
+package fr.thoridan.printer;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+
+/**
+ * Server-side settings of the printer placement engine and schematic uploads, stored in techutilities-server.toml.
+ */
+public final class PrinterConfig {
+    public static final ForgeConfigSpec SPEC;
+
+    public static final ForgeConfigSpec.IntValue BLOCKS_PER_TICK;
+    public static final ForgeConfigSpec.DoubleValue MILLIS_PER_TICK;
+    public static final ForgeConfigSpec.DoubleValue MSPT_THRESHOLD;
+    public static final ForgeConfigSpec.BooleanValue DIRECT_PLACEMENT;
+
+    public static final ForgeConfigSpec.IntValue UPLOAD_SESSIONS_PER_PLAYER;
+    public static final ForgeConfigSpec.IntValue UPLOAD_BYTES_IN_FLIGHT;
+    public static final ForgeConfigSpec.IntValue UPLOAD_IDLE_SECONDS;
+    public static final ForgeConfigSpec.IntValue UPLOAD_PART_MAX_AGE_HOURS;
+    public static final ForgeConfigSpec.IntValue UPLOAD_PART_MAX_BYTES;
+    public static final ForgeConfigSpec.IntValue UPLOAD_MAX_BLOCKS;
+    public static final ForgeConfigSpec.IntValue UPLOAD_MAX_EXTENT;
+
+    static {
+        ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
+        builder.push("placement");
+        BLOCKS_PER_TICK = builder
+                .comment("Maximum number of blocks all printers together may place in one server tick.")
+                .defineInRange("blocksPerTick", 256, 1, 65536);
+        MILLIS_PER_TICK = builder
+                .comment("Maximum time, in milliseconds, all printers together may spend placing blocks in one server tick.")
+                .defineInRange("millisPerTick", 5.0D, 0.1D, 50.0D);
+        MSPT_THRESHOLD = builder
+                .comment("Average tick time, in milliseconds, above which printers slow down until the server recovers.")
+                .defineInRange("msptThreshold", 40.0D, 1.0D, 1000.0D);
+        DIRECT_PLACEMENT = builder
+                .comment("Write plain blocks (no block entity, no placement logic) straight into chunk sections instead of simulating a player placing them.",
+                        "Protection is still checked once per chunk.")
+                .define("directPlacement", true);
+        builder.pop();
+
+        builder.push("uploads");
+        UPLOAD_SESSIONS_PER_PLAYER = builder
+                .comment("Maximum number of schematic uploads one player may have open at the same time.")
+                .defineInRange("sessionsPerPlayer", 2, 1, 64);
+        UPLOAD_BYTES_IN_FLIGHT = builder
+                .comment("Maximum total size, in bytes, of all schematic uploads in progress on the server.")
+                .defineInRange("bytesInFlight", 16 * 1024 * 1024, 1024, Integer.MAX_VALUE);
+        UPLOAD_IDLE_SECONDS = builder
+                .comment("Uploads that receive nothing for this many seconds are closed. What was received is kept on disk and can be resumed.")
+                .defineInRange("idleSeconds", 60, 5, 3600);
+        UPLOAD_PART_MAX_AGE_HOURS = builder
+                .comment("Unfinished uploads kept on disk for resuming are deleted after this many hours.")
+                .defineInRange("partMaxAgeHours", 24, 1, 8760);
+        UPLOAD_PART_MAX_BYTES = builder
+                .comment("Maximum total size, in bytes, of unfinished uploads kept on disk. The oldest are deleted first.")
+                .defineInRange("partMaxBytes", 64 * 1024 * 1024, 0, Integer.MAX_VALUE);
+        UPLOAD_MAX_BLOCKS = builder
+                .comment("Uploaded schematics with more blocks than this are rejected.")
+                .defineInRange("maxBlocks", 1000000, 1, Integer.MAX_VALUE);
+        UPLOAD_MAX_EXTENT = builder
+                .comment("Uploaded schematics larger than this along any axis are rejected.")
+                .defineInRange("maxExtent", 1024, 1, 30000000);
+        builder.pop();
+        SPEC = builder.build();
+    }
+
+    private PrinterConfig() {}
+}
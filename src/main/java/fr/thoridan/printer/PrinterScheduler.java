@@ -0,0 +1,90 @@
+package fr.thoridan.printer;
+
+import fr.thoridan.Techutilities;
+import fr.thoridan.block.PrinterBlockEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shares one per-tick placement budget between every printer of the server.
+ * <p>
+ * Printers with a running placement are served round-robin, a few blocks per turn, until the global
+ * block or time budget of the tick is spent. When the average tick time rises above the configured
+ * threshold, the budget is cut in half each tick, then grows back slowly once the server has recovered.
+ */
+@Mod.EventBusSubscriber(modid = Techutilities.MODID)
+public final class PrinterScheduler {
+    private static final int BLOCKS_PER_TURN = 16;
+    private static final double MIN_THROTTLE = 0.05D;
+    private static final double THROTTLE_RECOVERY = 0.05D; // Budget fraction regained per healthy tick
+
+    private static final ArrayDeque<PrinterBlockEntity> QUEUE = new ArrayDeque<>();
+    private static final Set<PrinterBlockEntity> ACTIVE = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static double throttle = 1.0D;
+
+    private PrinterScheduler() {}
+
+    /**
+     * Queues a printer with a running placement. Calling this again while it is queued does nothing.
+     */
+    public static void schedule(PrinterBlockEntity printer) {
+        if (ACTIVE.add(printer)) {
+            QUEUE.addLast(printer);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || QUEUE.isEmpty()) return;
+
+        updateThrottle(event.getServer());
+        int blockBudget = Math.max(1, (int) (PrinterConfig.BLOCKS_PER_TICK.get() * throttle));
+        long deadline = System.nanoTime() + (long) (PrinterConfig.MILLIS_PER_TICK.get() * throttle * 1_000_000L);
+
+        List<PrinterBlockEntity> waiting = new ArrayList<>();
+        while (blockBudget > 0 && !QUEUE.isEmpty() && System.nanoTime() < deadline) {
+            PrinterBlockEntity printer = QUEUE.pollFirst();
+            if (printer.isRemoved() || !printer.isPlacing()) {
+                ACTIVE.remove(printer);
+                continue;
+            }
+
+            int placed = printer.placeBlocks(Math.min(BLOCKS_PER_TURN, blockBudget), deadline);
+            blockBudget -= placed;
+
+            if (!printer.isPlacing()) {
+                ACTIVE.remove(printer);
+            } else if (placed == 0) {
+                waiting.add(printer); // Waiting for its chunks to load, try again next tick
+            } else {
+                QUEUE.addLast(printer);
+            }
+        }
+        QUEUE.addAll(waiting);
+    }
+
+    private static void updateThrottle(MinecraftServer server) {
+        if (server.getAverageTickTime() > PrinterConfig.MSPT_THRESHOLD.get()) {
+            throttle = Math.max(MIN_THROTTLE, throttle * 0.5D);
+        } else {
+            throttle = Math.min(1.0D, throttle + THROTTLE_RECOVERY);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        QUEUE.clear();
+        ACTIVE.clear();
+        throttle = 1.0D;
+    }
+}
@@ -0,0 +1,240 @@
+package fr.thoridan.printer;
+
+import it.unimi.dsi.fastutil.longs.Long2BooleanMap;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.*;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.common.util.BlockSnapshot;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.level.BlockEvent;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trusted placement path for plain blocks: states are written straight into the chunk sections,
+ * without going through the item use pipeline (events, sounds, neighbour updates, advancements).
+ * <p>
+ * Consecutive writes into the same 16x16x16 section are batched. When the writer moves on to another
+ * section, or is flushed, heightmaps are updated for the batch and the changes are handed to the
+ * chunk holder, which sends them as one section update packet per section.
+ * <p>
+ * Light checks and neighbour updates are held back until the writer leaves the chunk, then run once for
+ * everything written into it: all light checks are queued together so light propagates in a single pass,
+ * and only blocks outside the written set are notified, since blocks inside it were placed with their final state.
+ * Protection is checked once per chunk by posting a place event for the first block written into it. Like regular
+ * placement, the event is posted once the block is in the world, and the write is rolled back if it is cancelled.
+ */
+public final class SectionWriter {
+    // Blocks whose behaviour is fully described by their state, with no placement or tick logic
+    private static final int MAX_PENDING_CHUNK_BLOCKS = 16 * 16 * 64; // Finish a chunk early past this many writes
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private static final Set<Class<? extends Block>> PLAIN_BLOCKS = Set.of(
+            Block.class,
+            RotatedPillarBlock.class,
+            StairBlock.class,
+            SlabBlock.class,
+            GlassBlock.class,
+            StainedGlassBlock.class
+    );
+
+    private final ServerLevel level;
+    private final FakePlayer player;
+    private final Long2BooleanMap chunkPermissions = new Long2BooleanOpenHashMap();
+    private final LongArrayList changed = new LongArrayList(); // Positions written in the current section
+    private final LongOpenHashSet chunkWritten = new LongOpenHashSet(); // Positions written in the current chunk, awaiting light and neighbour updates
+    private long currentChunk = Long.MAX_VALUE;
+
+    private long currentSection = Long.MAX_VALUE;
+    private LevelChunk chunk;
+    private LevelChunkSection section;
+    private boolean sectionWasEmpty;
+
+    public SectionWriter(ServerLevel level, FakePlayer player) {
+        this.level = level;
+        this.player = player;
+    }
+
+    /**
+     * Whether the state can be written directly, i.e. placing it needs nothing but the state itself.
+     */
+    public static boolean isPlain(BlockState state) {
+        return !state.hasBlockEntity() && PLAIN_BLOCKS.contains(state.getBlock().getClass());
+    }
+
+    /**
+     * Writes a plain block state into its chunk section.
+     *
+     * @return false if the block was not written (chunk not loaded, protected, or target not replaceable),
+     * in which case the caller should fall back to regular placement.
+     */
+    public boolean place(BlockPos pos, BlockState state) {
+        if (level.isOutsideBuildHeight(pos)) return false;
+
+        long chunkKey = ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+        if (chunkKey != currentChunk) {
+            finish();
+            currentChunk = chunkKey;
+        }
+
+        long sectionKey = SectionPos.asLong(pos);
+        if (sectionKey != currentSection) {
+            flush();
+            openSection(pos, sectionKey);
+        }
+        if (section == null) return false;
+
+        int x = pos.getX() & 15, y = pos.getY() & 15, z = pos.getZ() & 15;
+        BlockState previous = section.getBlockState(x, y, z);
+        if (!previous.canBeReplaced() || previous.hasBlockEntity()) return false;
+
+        BlockSnapshot snapshot = chunkPermissions.containsKey(chunkKey) ? null : BlockSnapshot.create(level.dimension(), level, pos);
+        section.setBlockState(x, y, z, state, false);
+        if (snapshot != null && !checkPlacement(chunkKey, snapshot)) {
+            section.setBlockState(x, y, z, previous, false);
+            section = null; // The rest of this section is refused too
+            return false;
+        }
+
+        level.onBlockStateChange(pos, previous, state); // Points of interest
+        FluidState fluid = state.getFluidState();
+        if (!fluid.isEmpty()) {
+            level.scheduleTick(pos, fluid.getType(), fluid.getType().getTickDelay(level)); // Waterlogged states
+        }
+        changed.add(pos.asLong());
+        return true;
+    }
+
+    private void openSection(BlockPos pos, long sectionKey) {
+        currentSection = sectionKey;
+        chunk = level.getChunkSource().getChunkNow(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+        if (chunk == null || !mayBuildIn(chunk.getPos(), pos)) {
+            chunk = null;
+            section = null;
+            return;
+        }
+        section = chunk.getSection(chunk.getSectionIndex(pos.getY()));
+        sectionWasEmpty = section.hasOnlyAir();
+    }
+
+    /**
+     * Protection hook, evaluated once per chunk and remembered for the lifetime of this writer.
+     * Spawn protection is checked here; the place event needs a placed block, see {@link #checkPlacement}.
+     */
+    private boolean mayBuildIn(ChunkPos chunkPos, BlockPos samplePos) {
+        long key = chunkPos.toLong();
+        if (chunkPermissions.containsKey(key)) {
+            return chunkPermissions.get(key);
+        }
+        if (!level.mayInteract(player, samplePos)) {
+            chunkPermissions.put(key, false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Posts the place event for the first block written into a chunk, once it is in the world,
+     * so listeners see the placed state and the snapshot holds the replaced one.
+     */
+    private boolean checkPlacement(long chunkKey, BlockSnapshot snapshot) {
+        BlockPos pos = snapshot.getPos();
+        boolean allowed = !MinecraftForge.EVENT_BUS.post(new BlockEvent.EntityPlaceEvent(snapshot, level.getBlockState(pos.below()), player));
+        chunkPermissions.put(chunkKey, allowed);
+        return allowed;
+    }
+
+    /**
+     * Applies the deferred heightmap and client updates of the current section.
+     * Must be called before the writer is left alone for a tick, since chunks may unload in between.
+     */
+    public void flush() {
+        if (!changed.isEmpty()) {
+            applyChanges();
+        }
+        currentSection = Long.MAX_VALUE;
+        chunk = null;
+        section = null;
+    }
+
+    private void applyChanges() {
+        boolean sectionIsEmpty = section.hasOnlyAir();
+        if (sectionIsEmpty != sectionWasEmpty) {
+            level.getChunkSource().getLightEngine().updateSectionStatus(SectionPos.of(currentSection), sectionIsEmpty);
+        }
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < changed.size(); i++) {
+            pos.set(changed.getLong(i));
+            BlockState state = section.getBlockState(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+            for (Map.Entry<Heightmap.Types, Heightmap> heightmap : chunk.getHeightmaps()) {
+                heightmap.getValue().update(pos.getX() & 15, pos.getY(), pos.getZ() & 15, state);
+            }
+            level.getChunkSource().blockChanged(pos); // Batched per section by the chunk holder
+        }
+        chunkWritten.addAll(changed);
+        chunk.setUnsaved(true);
+        changed.clear();
+
+        if (chunkWritten.size() >= MAX_PENDING_CHUNK_BLOCKS) {
+            finishChunk();
+        }
+    }
+
+    /**
+     * Flushes the current section, then runs the light and neighbour updates held back for the current chunk.
+     * Called when the writer moves to another chunk and when the placement ends.
+     */
+    public void finish() {
+        flush();
+        finishChunk();
+        currentChunk = Long.MAX_VALUE;
+    }
+
+    private void finishChunk() {
+        if (chunkWritten.isEmpty()) return;
+        LevelChunk target = level.getChunkSource().getChunkNow(ChunkPos.getX(currentChunk), ChunkPos.getZ(currentChunk));
+        if (target == null) {
+            // Unloaded in the meantime: these updates are lost, the chunk keeps the light and shapes it was saved with.
+            // Owners must finish the writer before releasing the tickets that keep its chunks loaded.
+            chunkWritten.clear();
+            return;
+        }
+
+        // One consolidated relight: every check is queued before the light engine runs
+        LongIterator it = chunkWritten.iterator();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        while (it.hasNext()) {
+            level.getChunkSource().getLightEngine().checkBlock(pos.set(it.nextLong()));
+        }
+
+        // Border-only neighbour updates: blocks inside the written set already have their final state
+        BlockPos.MutableBlockPos neighbour = new BlockPos.MutableBlockPos();
+        it = chunkWritten.iterator();
+        while (it.hasNext()) {
+            pos.set(it.nextLong());
+            BlockState state = target.getBlockState(pos);
+            for (Direction direction : DIRECTIONS) {
+                neighbour.setWithOffset(pos, direction);
+                if (chunkWritten.contains(neighbour.asLong()) || !level.isLoaded(neighbour)) continue;
+                level.neighborShapeChanged(direction.getOpposite(), state, neighbour, pos, Block.UPDATE_ALL, 512);
+                level.neighborChanged(neighbour, state.getBlock(), pos);
+            }
+        }
+        chunkWritten.clear();
+    }
+}
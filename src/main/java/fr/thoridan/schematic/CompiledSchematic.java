@@ -0,0 +1,178 @@
+package fr.thoridan.schematic;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderGetter;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.util.Mth;
+import net.minecraft.util.SimpleBitStorage;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Rotation;
+import net.minecraft.world.level.block.state.BlockState;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, compact form of a schematic shared by placement, item counting and the ghost preview.
+ * <p>
+ * Each block costs one packed int for its position (an index into the structure's bounding volume)
+ * plus a few bits for its palette index. Block entity NBT is only stored for the blocks that have some.
+ * Blocks keep the order they had in the file.
+ */
+public final class CompiledSchematic {
+    private final int sizeX, sizeY, sizeZ;
+    private final int originX, originY, originZ; // Minimum corner of the stored blocks
+    private final int spanX, spanZ;
+    private final BlockState[] palette;
+    private final int[] positions;
+    private final SimpleBitStorage states;
+    private final int[] paletteCounts; // Palette index -> number of blocks using it
+    private final Int2ObjectMap<CompoundTag> blockEntities;
+
+    private CompiledSchematic(int sizeX, int sizeY, int sizeZ, int originX, int originY, int originZ, int spanX, int spanZ,
+                              BlockState[] palette, int[] positions, SimpleBitStorage states, int[] paletteCounts,
+                              Int2ObjectMap<CompoundTag> blockEntities) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.spanX = spanX;
+        this.spanZ = spanZ;
+        this.palette = palette;
+        this.positions = positions;
+        this.states = states;
+        this.paletteCounts = paletteCounts;
+        this.blockEntities = blockEntities;
+    }
+
+    /**
+     * Reads and compiles a schematic file.
+     *
+     * @param blockLookup Lookup used to resolve the palette, unknown blocks become air.
+     */
+    public static CompiledSchematic load(File file, HolderGetter<Block> blockLookup) throws IOException {
+        return compile(SchematicReader.read(file), blockLookup);
+    }
+
+    /**
+     * Compiles decoded columns, resolving the palette against the given lookup.
+     *
+     * @throws IOException If a block points outside the palette or the structure is too large to index.
+     */
+    public static CompiledSchematic compile(SchematicReader.Columns columns, HolderGetter<Block> blockLookup) throws IOException {
+        BlockState[] palette = new BlockState[columns.palette().size()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = NbtUtils.readBlockState(blockLookup, columns.palette().get(i));
+        }
+
+        int count = columns.blockCount();
+        int[] xs = columns.x(), ys = columns.y(), zs = columns.z(), stateIds = columns.state();
+        int minX = 0, minY = 0, minZ = 0, maxX = 0, maxY = 0, maxZ = 0;
+        if (count > 0) {
+            minX = maxX = xs[0];
+            minY = maxY = ys[0];
+            minZ = maxZ = zs[0];
+        }
+        for (int i = 0; i < count; i++) {
+            if (stateIds[i] < 0 || stateIds[i] >= palette.length) {
+                throw new IOException("Block " + i + " uses unknown palette entry " + stateIds[i]);
+            }
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+        }
+
+        long spanX = (long) maxX - minX + 1, spanY = (long) maxY - minY + 1, spanZ = (long) maxZ - minZ + 1;
+        if (spanX * spanY * spanZ > Integer.MAX_VALUE) {
+            throw new IOException("Schematic is too large: " + spanX + "x" + spanY + "x" + spanZ);
+        }
+
+        int[] positions = new int[count];
+        SimpleBitStorage states = new SimpleBitStorage(Math.max(1, Mth.ceillog2(Math.max(palette.length, 1))), count);
+        int[] paletteCounts = new int[palette.length];
+        for (int i = 0; i < count; i++) {
+            positions[i] = (int) (((ys[i] - minY) * spanZ + (zs[i] - minZ)) * spanX + (xs[i] - minX));
+            states.set(i, stateIds[i]);
+            paletteCounts[stateIds[i]]++;
+        }
+
+        Int2ObjectMap<CompoundTag> blockEntities = columns.blockEntities().isEmpty()
+                ? Int2ObjectMaps.emptyMap()
+                : Int2ObjectMaps.unmodifiable(new Int2ObjectOpenHashMap<>(columns.blockEntities()));
+
+        return new CompiledSchematic(columns.sizeX(), columns.sizeY(), columns.sizeZ(), minX, minY, minZ, (int) spanX, (int) spanZ,
+                palette, positions, states, paletteCounts, blockEntities);
+    }
+
+    public int getSizeX() { return sizeX; }
+    public int getSizeY() { return sizeY; }
+    public int getSizeZ() { return sizeZ; }
+
+    public int blockCount() { return positions.length; }
+    public int getPaletteSize() { return palette.length; }
+    public BlockState getPaletteState(int paletteIndex) { return palette[paletteIndex]; }
+
+    public int getStateId(int index) { return states.get(index); }
+    public BlockState getState(int index) { return palette[states.get(index)]; }
+
+    /**
+     * Writes the unrotated local position of block {@code index} into {@code out}.
+     */
+    public BlockPos.MutableBlockPos getPos(int index, BlockPos.MutableBlockPos out) {
+        int packed = positions[index];
+        int x = packed % spanX;
+        packed /= spanX;
+        int z = packed % spanZ;
+        int y = packed / spanZ;
+        return out.set(originX + x, originY + y, originZ + z);
+    }
+
+    /**
+     * Writes the local position of block {@code index}, rotated around the structure origin, into {@code out}.
+     */
+    public BlockPos.MutableBlockPos getRotatedPos(int index, Rotation rotation, BlockPos.MutableBlockPos out) {
+        getPos(index, out);
+        int x = out.getX(), z = out.getZ();
+        return switch (rotation) {
+            case NONE -> out;
+            case CLOCKWISE_90 -> out.set(-z, out.getY(), x);
+            case CLOCKWISE_180 -> out.set(-x, out.getY(), -z);
+            case COUNTERCLOCKWISE_90 -> out.set(z, out.getY(), -x);
+        };
+    }
+
+    @Nullable
+    public CompoundTag getBlockEntityNbt(int index) {
+        return blockEntities.get(index);
+    }
+
+    /**
+     * Returns how many of each item the structure needs. Rotating a block never changes its item,
+     * so this is the same for every rotation.
+     */
+    public Map<Item, Integer> getRequiredItems() {
+        Map<Item, Integer> required = new HashMap<>();
+        for (int i = 0; i < palette.length; i++) {
+            if (paletteCounts[i] == 0) continue;
+            Item item = palette[i].getBlock().asItem();
+            if (item != Items.AIR) {
+                required.merge(item, paletteCounts[i], Integer::sum);
+            }
+        }
+        return required;
+    }
+}
@@ -0,0 +1,357 @@
+package fr.thoridan.schematic;
+
+import com.mojang.logging.LogUtils;
+import fr.thoridan.Techutilities;
+import fr.thoridan.network.ModNetworking;
+import fr.thoridan.network.printer.SchematicCataloguePacket;
+import fr.thoridan.network.printer.SchematicManager;
+import net.minecraft.core.HolderGetter;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.network.PacketDistributor;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Server-authoritative list of the schematics the server holds, with what clients need to show and pick them:
+ * hash, block count, bounds and item bill.
+ * <p>
+ * The catalogue is built on the {@link SchematicIO} thread when the server starts, then kept up to date as
+ * uploads complete. Each player gets a full snapshot when logging in and only deltas afterwards.
+ * The table itself is server thread only.
+ * <p>
+ * Entries are summaries, not compiled schematics: the start-up scan only decodes the block columns of files it has
+ * never seen, and never goes through the {@link SchematicRegistry}. Summaries are kept by content hash in
+ * {@value #CACHE_FILE} under the store folder, with the size and mtime of plain files, so later starts read nothing
+ * but that file.
+ */
+@Mod.EventBusSubscriber(modid = Techutilities.MODID)
+public final class SchematicCatalogue {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int SNAPSHOT_BATCH = 64; // Entries per packet, item bills can be large
+    private static final String CACHE_FILE = "catalogue.nbt";
+    private static final int CACHE_VERSION = 1;
+
+    private static final Map<String, Entry> ENTRIES = new TreeMap<>();
+    private static boolean loaded = false;
+
+    private SchematicCatalogue() {}
+
+    /**
+     * @param requiredItems Item -> amount needed to build the schematic.
+     */
+    public record Entry(String name, String hash, int blockCount, int sizeX, int sizeY, int sizeZ, Map<Item, Integer> requiredItems) {
+        public Entry withName(String name) {
+            return new Entry(name, hash, blockCount, sizeX, sizeY, sizeZ, requiredItems);
+        }
+    }
+
+    /**
+     * Describes a compiled schematic. Safe to call from the I/O thread.
+     */
+    public static Entry describe(String name, String hash, CompiledSchematic schematic) {
+        return new Entry(name, hash, schematic.blockCount(), schematic.getSizeX(), schematic.getSizeY(), schematic.getSizeZ(),
+                Collections.unmodifiableMap(schematic.getRequiredItems()));
+    }
+
+    /**
+     * Describes stored content from its block columns, without compiling it. I/O thread only.
+     */
+    public static Entry describeStored(String name, String hash, HolderGetter<Block> blockLookup) throws IOException {
+        return summarize(name, hash, SchematicReader.read(SchematicStore.getStoreFolder().resolve(hash).toFile()), blockLookup);
+    }
+
+    /**
+     * An entry already describing this content, under any name, or null. Server thread only.
+     */
+    public static Entry findByHash(String hash) {
+        for (Entry entry : ENTRIES.values()) {
+            if (hash.equals(entry.hash())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts blocks and items straight from the decoded columns; only the palette is resolved.
+     */
+    private static Entry summarize(String name, String hash, SchematicReader.Columns columns, HolderGetter<Block> blockLookup) throws IOException {
+        List<CompoundTag> palette = columns.palette();
+        int[] counts = new int[palette.size()];
+        for (int state : columns.state()) {
+            if (state < 0 || state >= counts.length) {
+                throw new IOException("Block uses unknown palette entry " + state);
+            }
+            counts[state]++;
+        }
+        Map<Item, Integer> items = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            Item item = NbtUtils.readBlockState(blockLookup, palette.get(i)).getBlock().asItem();
+            if (item != Items.AIR) {
+                items.merge(item, counts[i], Integer::sum);
+            }
+        }
+        return new Entry(name, hash, columns.blockCount(), columns.sizeX(), columns.sizeY(), columns.sizeZ(),
+                Collections.unmodifiableMap(items));
+    }
+
+    /**
+     * Adds or replaces an entry and sends it to every player.
+     */
+    public static void put(Entry entry) {
+        ENTRIES.put(entry.name(), entry);
+        if (loaded) {
+            ModNetworking.INSTANCE.send(PacketDistributor.ALL.noArg(), new SchematicCataloguePacket(false, List.of(entry), List.of()));
+        }
+    }
+
+    /**
+     * Removes an entry, e.g. when its file disappeared, and tells every player.
+     */
+    public static void remove(String name) {
+        if (ENTRIES.remove(name) != null && loaded) {
+            ModNetworking.INSTANCE.send(PacketDistributor.ALL.noArg(), new SchematicCataloguePacket(false, List.of(), List.of(name)));
+        }
+    }
+
+    private static void sendSnapshot(PacketDistributor.PacketTarget target) {
+        List<Entry> all = new ArrayList<>(ENTRIES.values());
+        int from = 0;
+        do {
+            int to = Math.min(all.size(), from + SNAPSHOT_BATCH);
+            ModNetworking.INSTANCE.send(target, new SchematicCataloguePacket(from == 0, all.subList(from, to), List.of()));
+            from = to;
+        } while (from < all.size());
+    }
+
+    /**
+     * Every name the server can resolve: store aliases and plain files in the schematics folder.
+     * Hidden files, such as a client index sharing the folder on an integrated server, are skipped.
+     */
+    private static Set<String> listNames() {
+        Set<String> names = new TreeSet<>(SchematicStore.getNames());
+        File[] files = SchematicRegistry.getSchematicsFolder().listFiles((d, name) -> SchematicManager.isValidName(name));
+        if (files != null) {
+            for (File file : files) {
+                names.add(file.getName());
+            }
+        }
+        return names;
+    }
+
+    @SubscribeEvent
+    public static void onServerStarted(ServerStartedEvent event) {
+        MinecraftServer server = event.getServer();
+        HolderGetter<Block> blockLookup = server.registryAccess().lookupOrThrow(Registries.BLOCK);
+        SchematicIO.submit(() -> {
+            SummaryCache cache = SummaryCache.load();
+            List<Entry> scanned = new ArrayList<>();
+            for (String name : listNames()) {
+                try {
+                    scanned.add(scan(name, cache, blockLookup));
+                } catch (IOException e) {
+                    LOGGER.warn("Skipping schematic '{}': {}", name, e.getMessage());
+                }
+            }
+            cache.save(scanned);
+            return scanned;
+        }).whenCompleteAsync((scanned, error) -> {
+            if (error != null) {
+                LOGGER.error("Could not build the schematic catalogue", error);
+                return;
+            }
+            scanned.forEach(entry -> ENTRIES.putIfAbsent(entry.name(), entry)); // Uploads done meanwhile are newer
+            loaded = true;
+            sendSnapshot(PacketDistributor.ALL.noArg());
+        }, server);
+    }
+
+    /**
+     * Describes one name at start-up, from the summary cache when its content was seen before.
+     */
+    private static Entry scan(String name, SummaryCache cache, HolderGetter<Block> blockLookup) throws IOException {
+        String hash = SchematicStore.getHash(name);
+        Path file = SchematicStore.resolve(name);
+        if (hash == null || !file.getFileName().toString().equals(hash)) {
+            // Plain file: hashed again only if it changed
+            if (!Files.isRegularFile(file)) {
+                throw new IOException("File not found");
+            }
+            long length = Files.size(file);
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            hash = cache.getFileHash(name, length, lastModified);
+            if (hash == null) {
+                hash = SchematicRegistry.hash(file);
+                cache.putFile(name, length, lastModified, hash);
+            }
+        }
+
+        Entry known = cache.get(hash);
+        if (known != null) {
+            return known.withName(name);
+        }
+        Entry entry = summarize(name, hash, SchematicReader.read(file.toFile()), blockLookup);
+        cache.put(entry); // Other names may hold the same content
+        return entry;
+    }
+
+    /**
+     * Summaries by content hash and hashes of plain files, as persisted between server starts. I/O thread only.
+     */
+    private static final class SummaryCache {
+        private record FileStamp(long length, long lastModified, String hash) {}
+
+        private final Map<String, Entry> contents = new HashMap<>();
+        private final Map<String, FileStamp> files = new HashMap<>();
+
+        private static Path getFile() {
+            return SchematicStore.getStoreFolder().resolve(CACHE_FILE);
+        }
+
+        private static SummaryCache load() {
+            SummaryCache cache = new SummaryCache();
+            Path file = getFile();
+            if (!Files.isRegularFile(file)) return cache;
+            try {
+                CompoundTag root = NbtIo.readCompressed(file.toFile());
+                if (root.getInt("Version") != CACHE_VERSION) return cache;
+                ListTag contents = root.getList("Contents", Tag.TAG_COMPOUND);
+                for (int i = 0; i < contents.size(); i++) {
+                    Entry entry = loadEntry(contents.getCompound(i));
+                    if (entry != null) {
+                        cache.contents.put(entry.hash(), entry);
+                    }
+                }
+                ListTag files = root.getList("Files", Tag.TAG_COMPOUND);
+                for (int i = 0; i < files.size(); i++) {
+                    CompoundTag tag = files.getCompound(i);
+                    cache.putFile(tag.getString("Name"), tag.getLong("Length"), tag.getLong("LastModified"), tag.getString("Hash"));
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not read the schematic catalogue cache, it will be rebuilt: {}", e.getMessage());
+            }
+            return cache;
+        }
+
+        /**
+         * @return null if an item of the bill no longer exists, so the content is summarized again.
+         */
+        private static Entry loadEntry(CompoundTag tag) {
+            int[] size = tag.getIntArray("Size");
+            if (size.length != 3) return null;
+            CompoundTag itemsTag = tag.getCompound("Items");
+            Map<Item, Integer> items = new HashMap<>();
+            for (String key : itemsTag.getAllKeys()) {
+                ResourceLocation id = ResourceLocation.tryParse(key);
+                Item item = id != null ? BuiltInRegistries.ITEM.getOptional(id).orElse(null) : null;
+                if (item == null) return null;
+                items.put(item, itemsTag.getInt(key));
+            }
+            return new Entry("", tag.getString("Hash"), tag.getInt("BlockCount"), size[0], size[1], size[2],
+                    Collections.unmodifiableMap(items));
+        }
+
+        private Entry get(String hash) {
+            return contents.get(hash);
+        }
+
+        private void put(Entry entry) {
+            contents.put(entry.hash(), entry);
+        }
+
+        private String getFileHash(String name, long length, long lastModified) {
+            FileStamp stamp = files.get(name);
+            return stamp != null && stamp.length() == length && stamp.lastModified() == lastModified ? stamp.hash() : null;
+        }
+
+        private void putFile(String name, long length, long lastModified, String hash) {
+            files.put(name, new FileStamp(length, lastModified, hash));
+        }
+
+        /**
+         * Writes the summaries of the scanned entries, dropping everything else. Written to a temp file first.
+         */
+        private void save(List<Entry> scanned) {
+            CompoundTag root = new CompoundTag();
+            root.putInt("Version", CACHE_VERSION);
+            ListTag contentList = new ListTag();
+            Set<String> hashes = new HashSet<>();
+            for (Entry entry : scanned) {
+                if (!hashes.add(entry.hash())) continue;
+                CompoundTag tag = new CompoundTag();
+                tag.putString("Hash", entry.hash());
+                tag.putInt("BlockCount", entry.blockCount());
+                tag.putIntArray("Size", new int[]{entry.sizeX(), entry.sizeY(), entry.sizeZ()});
+                CompoundTag itemsTag = new CompoundTag();
+                entry.requiredItems().forEach((item, amount) -> itemsTag.putInt(BuiltInRegistries.ITEM.getKey(item).toString(), amount));
+                tag.put("Items", itemsTag);
+                contentList.add(tag);
+            }
+            root.put("Contents", contentList);
+            ListTag fileList = new ListTag();
+            for (Entry entry : scanned) {
+                FileStamp stamp = files.get(entry.name());
+                if (stamp == null) continue; // Stored content, found through its alias
+                CompoundTag tag = new CompoundTag();
+                tag.putString("Name", entry.name());
+                tag.putLong("Length", stamp.length());
+                tag.putLong("LastModified", stamp.lastModified());
+                tag.putString("Hash", stamp.hash());
+                fileList.add(tag);
+            }
+            root.put("Files", fileList);
+
+            Path file = getFile();
+            Path temp = file.resolveSibling(CACHE_FILE + ".tmp");
+            try {
+                Files.createDirectories(file.getParent());
+                NbtIo.writeCompressed(root, temp.toFile());
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not write the schematic catalogue cache: {}", e.getMessage());
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (loaded && event.getEntity() instanceof ServerPlayer player) {
+            sendSnapshot(PacketDistributor.PLAYER.with(() -> player));
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        ENTRIES.clear();
+        loaded = false;
+    }
+}
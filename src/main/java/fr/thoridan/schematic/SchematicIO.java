@@ -0,0 +1,43 @@
+package fr.thoridan.schematic;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single background thread for schematic file work on the server: writing uploads, syncing, hashing,
+ * validating and compiling them. Tasks run one at a time in submission order, so the operations of an upload
+ * never race each other. Callers post results back to the server thread with
+ * {@code future.whenCompleteAsync(callback, server)}.
+ */
+public final class SchematicIO {
+    public static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Schematic IO");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SchematicIO() {}
+
+    @FunctionalInterface
+    public interface IOTask<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Runs a task on the I/O thread. Anything it throws, checked exceptions and errors alike, completes the
+     * future exceptionally, so callers always get their callback.
+     */
+    public static <T> CompletableFuture<T> submit(IOTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            try {
+                future.complete(task.run());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,246 @@
+package fr.thoridan.schematic;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.Tag;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming decoder for gzip-compressed structure NBT files.
+ * <p>
+ * Instead of materialising the whole tag tree, the "blocks" list is read straight into primitive
+ * columns. Only the small palette entries and per-block "nbt" compounds are built as tags;
+ * every other tag in the file (entities, author, ...) is skipped without being allocated.
+ * <p>
+ * Nothing is sized from a count in the file before that count is checked: the block list against a maximum
+ * given by the caller, other lists against what they can hold, and each compound against a byte quota.
+ * A malformed or hostile file fails with an {@link IOException}.
+ */
+public final class SchematicReader {
+    private static final int MAX_DEPTH = 512;
+    /** Block limit for local files, which are not bound by the server's upload limits. */
+    public static final int DEFAULT_MAX_BLOCKS = 4 * 1024 * 1024;
+    // Same quota as a single tag received over the network
+    private static final long MAX_TAG_BYTES = 2 * 1024 * 1024;
+    // Preallocate no more than this for lists of tags, they grow as entries are actually read
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private SchematicReader() {}
+
+    /**
+     * The decoded columns of a schematic. Block {@code i} sits at
+     * ({@code x[i]}, {@code y[i]}, {@code z[i]}) and uses palette entry {@code state[i]}.
+     *
+     * @param blockEntities Block index -> block entity NBT, only for blocks that have one.
+     */
+    public record Columns(int sizeX, int sizeY, int sizeZ, List<CompoundTag> palette,
+                          int[] x, int[] y, int[] z, int[] state, Int2ObjectMap<CompoundTag> blockEntities) {
+        public int blockCount() { return state.length; }
+    }
+
+    public static Columns read(File file) throws IOException {
+        return read(file, DEFAULT_MAX_BLOCKS);
+    }
+
+    public static Columns read(File file, int maxBlocks) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, maxBlocks);
+        }
+    }
+
+    public static Columns read(InputStream stream) throws IOException {
+        return read(stream, DEFAULT_MAX_BLOCKS);
+    }
+
+    /**
+     * Decodes a gzip-compressed structure from the stream. The stream is not closed.
+     *
+     * @param maxBlocks Files declaring more blocks are rejected before anything is allocated for them.
+     */
+    public static Columns read(InputStream stream, int maxBlocks) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+
+        if (in.readByte() != Tag.TAG_COMPOUND) {
+            throw new IOException("Root tag must be a compound");
+        }
+        in.readUTF(); // Root name, always empty
+
+        int[] size = new int[3];
+        List<CompoundTag> palette = null;
+        int[] xs = new int[0], ys = new int[0], zs = new int[0], states = new int[0];
+        Int2ObjectMap<CompoundTag> blockEntities = new Int2ObjectOpenHashMap<>();
+
+        byte type;
+        while ((type = in.readByte()) != Tag.TAG_END) {
+            String name = in.readUTF();
+            if (name.equals("size") && type == Tag.TAG_LIST) {
+                size = readIntList(in, 3);
+            } else if (name.equals("palette") && type == Tag.TAG_LIST) {
+                palette = readCompoundList(in, maxBlocks);
+            } else if (name.equals("palettes") && type == Tag.TAG_LIST && palette == null) {
+                palette = readFirstPalette(in, maxBlocks);
+            } else if (name.equals("blocks") && type == Tag.TAG_LIST) {
+                byte elementType = in.readByte();
+                int count = in.readInt();
+                if (count < 0 || (count > 0 && elementType != Tag.TAG_COMPOUND)) {
+                    throw new IOException("\"blocks\" must be a list of compounds");
+                }
+                if (count > maxBlocks) {
+                    throw new IOException("Too many blocks: " + count);
+                }
+                xs = new int[count];
+                ys = new int[count];
+                zs = new int[count];
+                states = new int[count];
+                for (int i = 0; i < count; i++) {
+                    readBlock(in, i, xs, ys, zs, states, blockEntities);
+                }
+            } else {
+                skip(in, type, 0);
+            }
+        }
+
+        if (size.length < 3) {
+            size = new int[]{0, 0, 0};
+        }
+        return new Columns(size[0], size[1], size[2], palette != null ? palette : List.of(),
+                xs, ys, zs, states, blockEntities);
+    }
+
+    private static void readBlock(DataInput in, int index, int[] xs, int[] ys, int[] zs, int[] states,
+                                  Int2ObjectMap<CompoundTag> blockEntities) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != Tag.TAG_END) {
+            String name = in.readUTF();
+            if (name.equals("pos") && type == Tag.TAG_LIST) {
+                int[] pos = readIntList(in, 3);
+                if (pos.length < 3) throw new IOException("Block " + index + " has an invalid position");
+                xs[index] = pos[0];
+                ys[index] = pos[1];
+                zs[index] = pos[2];
+            } else if (name.equals("state") && type == Tag.TAG_INT) {
+                states[index] = in.readInt();
+            } else if (name.equals("nbt") && type == Tag.TAG_COMPOUND) {
+                blockEntities.put(index, CompoundTag.TYPE.load(in, 1, new NbtAccounter(MAX_TAG_BYTES)));
+            } else {
+                skip(in, type, 1);
+            }
+        }
+    }
+
+    private static int[] readIntList(DataInput in, int maxCount) throws IOException {
+        byte elementType = in.readByte();
+        int count = readListCount(in, elementType, maxCount);
+        if (elementType != Tag.TAG_INT) {
+            for (int i = 0; i < count; i++) skip(in, elementType, 1);
+            return new int[0];
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static List<CompoundTag> readCompoundList(DataInput in, int maxCount) throws IOException {
+        byte elementType = in.readByte();
+        int count = readListCount(in, elementType, maxCount);
+        List<CompoundTag> list = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            if (elementType == Tag.TAG_COMPOUND) {
+                list.add(CompoundTag.TYPE.load(in, 1, new NbtAccounter(MAX_TAG_BYTES)));
+            } else {
+                skip(in, elementType, 1);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Files with random block variants store several palettes; like the structure template, use the first one.
+     */
+    private static List<CompoundTag> readFirstPalette(DataInput in, int maxEntries) throws IOException {
+        byte elementType = in.readByte();
+        int count = readListCount(in, elementType, Integer.MAX_VALUE);
+        List<CompoundTag> first = null;
+        for (int i = 0; i < count; i++) {
+            if (first == null && elementType == Tag.TAG_LIST) {
+                first = readCompoundList(in, maxEntries);
+            } else {
+                skip(in, elementType, 1);
+            }
+        }
+        return first != null ? first : List.of();
+    }
+
+    /**
+     * Reads the length of a list whose element type was just read, and checks it before anything is sized from it.
+     * Lists of end tags hold nothing to read, so a non-empty one is refused rather than looped over.
+     */
+    private static int readListCount(DataInput in, byte elementType, int maxCount) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount || (count > 0 && elementType == Tag.TAG_END)) {
+            throw new IOException("Invalid list length " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Skips the payload of a tag of the given type without allocating it.
+     */
+    private static void skip(DataInput in, byte type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT tree is too deep");
+        }
+        switch (type) {
+            case Tag.TAG_END -> {}
+            case Tag.TAG_BYTE -> skipFully(in, 1);
+            case Tag.TAG_SHORT -> skipFully(in, 2);
+            case Tag.TAG_INT, Tag.TAG_FLOAT -> skipFully(in, 4);
+            case Tag.TAG_LONG, Tag.TAG_DOUBLE -> skipFully(in, 8);
+            case Tag.TAG_BYTE_ARRAY -> skipFully(in, readArrayLength(in));
+            case Tag.TAG_STRING -> skipFully(in, in.readUnsignedShort());
+            case Tag.TAG_INT_ARRAY -> skipFully(in, readArrayLength(in) * 4L);
+            case Tag.TAG_LONG_ARRAY -> skipFully(in, readArrayLength(in) * 8L);
+            case Tag.TAG_LIST -> {
+                byte elementType = in.readByte();
+                int count = readListCount(in, elementType, Integer.MAX_VALUE);
+                for (int i = 0; i < count; i++) skip(in, elementType, depth + 1);
+            }
+            case Tag.TAG_COMPOUND -> {
+                byte childType;
+                while ((childType = in.readByte()) != Tag.TAG_END) {
+                    skipFully(in, in.readUnsignedShort()); // Child name
+                    skip(in, childType, depth + 1);
+                }
+            }
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    private static int readArrayLength(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid array length " + length);
+        }
+        return length;
+    }
+
+    private static void skipFully(DataInput in, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                // skipBytes may stop early on compressed streams, fall back to reading
+                in.readByte();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+}
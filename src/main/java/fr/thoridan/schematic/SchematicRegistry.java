@@ -0,0 +1,281 @@
+package fr.thoridan.schematic;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.core.HolderGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Server-wide cache of compiled schematics, shared by every printer.
+ * <p>
+ * File names map to the SHA-256 of the file content, directly for {@link SchematicStore} aliases, and compiled
+ * schematics are interned by that hash, so identical files are decoded once no matter how many printers or names use them.
+ * Compiled schematics are only softly held: printers keep a strong reference while they build,
+ * and the garbage collector may drop the rest under memory pressure.
+ * <p>
+ * The registry lock only guards its tables: files are read, decoded and compiled outside of it, so a long
+ * compile on the I/O thread never blocks a printer on the server thread that needs other content.
+ */
+public final class SchematicRegistry {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final Map<String, NameEntry> NAMES = new HashMap<>();
+    private static final Map<String, HashReference> BY_HASH = new HashMap<>();
+    private static final ReferenceQueue<CompiledSchematic> CLEARED = new ReferenceQueue<>();
+    private static final Map<String, CompletableFuture<CompiledSchematic>> COMPILING = new HashMap<>(); // Hash -> compile in progress
+
+    private SchematicRegistry() {}
+
+    /**
+     * What a name pointed at the last time its file was read.
+     */
+    private record NameEntry(long length, long lastModified, String hash) {}
+
+    /**
+     * A compiled schematic together with the hash of the content it was compiled from.
+     */
+    public record Loaded(String hash, CompiledSchematic schematic) {}
+
+    private static final class HashReference extends SoftReference<CompiledSchematic> {
+        private final String hash;
+
+        private HashReference(String hash, CompiledSchematic schematic) {
+            super(schematic, CLEARED);
+            this.hash = hash;
+        }
+    }
+
+    public static File getSchematicsFolder() {
+        return new File(FMLPaths.GAMEDIR.get().toFile(), "schematics");
+    }
+
+    /**
+     * Returns the compiled schematic stored under this name, decoding the file only if
+     * it changed since the last call and no other name already holds the same content.
+     *
+     * @param blockLookup Lookup used to resolve the palette.
+     * @throws IOException If the file is missing or cannot be decoded.
+     */
+    public static CompiledSchematic get(String name, HolderGetter<Block> blockLookup) throws IOException {
+        return load(name, blockLookup).schematic();
+    }
+
+    /**
+     * Like {@link #get}, also returning the hash of the content the name resolved to,
+     * so callers can find that exact content again with {@link #getByHash}.
+     */
+    public static Loaded load(String name, HolderGetter<Block> blockLookup) throws IOException {
+        // Stored content is immutable, an alias is enough to find its compiled form
+        String storedHash = SchematicStore.getHash(name);
+        if (storedHash != null) {
+            CompiledSchematic cached = cached(storedHash);
+            if (cached != null) {
+                return new Loaded(storedHash, cached);
+            }
+        }
+
+        File file = SchematicStore.resolve(name).toFile();
+        if (!file.isFile()) {
+            synchronized (SchematicRegistry.class) {
+                NAMES.remove(name);
+            }
+            throw new IOException("Schematic not found: " + name);
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        NameEntry known;
+        synchronized (SchematicRegistry.class) {
+            known = NAMES.get(name);
+        }
+        if (known != null && known.length() == length && known.lastModified() == lastModified) {
+            CompiledSchematic cached = cached(known.hash());
+            if (cached != null) {
+                return new Loaded(known.hash(), cached);
+            }
+        }
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String hash = hash(bytes);
+        synchronized (SchematicRegistry.class) {
+            NAMES.put(name, new NameEntry(length, lastModified, hash));
+        }
+        CompiledSchematic compiled = compileOnce(hash, () -> SchematicReader.read(new ByteArrayInputStream(bytes)), blockLookup);
+        return new Loaded(hash, compiled);
+    }
+
+    /**
+     * Returns the compiled schematic of exactly this content, whatever its name points to now.
+     * Stored content is read from the {@link SchematicStore}; for a plain file, {@code name} is read
+     * and must still hash the same.
+     *
+     * @throws IOException If that content is gone or cannot be decoded.
+     */
+    public static CompiledSchematic getByHash(String hash, String name, HolderGetter<Block> blockLookup) throws IOException {
+        CompiledSchematic cached = cached(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        Path stored = SchematicStore.getStoreFolder().resolve(hash);
+        if (!Files.isRegularFile(stored)) {
+            Loaded loaded = load(name, blockLookup);
+            if (!loaded.hash().equals(hash)) {
+                throw new IOException("Schematic '" + name + "' changed");
+            }
+            return loaded.schematic();
+        }
+        return compileOnce(hash, () -> SchematicReader.read(stored.toFile()), blockLookup);
+    }
+
+    /**
+     * Compiles a content unless it is already interned. Reading and decoding happen outside the registry lock;
+     * a caller asking for a content another thread is compiling waits for that compile instead of starting its own.
+     */
+    private static CompiledSchematic compileOnce(String hash, SchematicIO.IOTask<SchematicReader.Columns> reader,
+                                                 HolderGetter<Block> blockLookup) throws IOException {
+        CompletableFuture<CompiledSchematic> compiling = new CompletableFuture<>();
+        CompletableFuture<CompiledSchematic> inFlight;
+        synchronized (SchematicRegistry.class) {
+            purgeCleared();
+            CompiledSchematic cached = lookup(hash);
+            if (cached != null) {
+                return cached;
+            }
+            inFlight = COMPILING.putIfAbsent(hash, compiling);
+        }
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            CompiledSchematic compiled = CompiledSchematic.compile(reader.run(), blockLookup);
+            synchronized (SchematicRegistry.class) {
+                BY_HASH.put(hash, new HashReference(hash, compiled));
+                COMPILING.remove(hash, compiling);
+            }
+            compiling.complete(compiled);
+            LOGGER.debug("Compiled schematic {} ({} blocks)", hash, compiled.blockCount());
+            return compiled;
+        } catch (Throwable e) {
+            synchronized (SchematicRegistry.class) {
+                COMPILING.remove(hash, compiling);
+            }
+            compiling.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static CompiledSchematic await(CompletableFuture<CompiledSchematic> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            throw e;
+        }
+    }
+
+    private static synchronized CompiledSchematic cached(String hash) {
+        purgeCleared();
+        return lookup(hash);
+    }
+
+    /**
+     * The content hash of a name, as of the last {@link #get} for plain files; null if unknown.
+     */
+    public static synchronized String getHash(String name) {
+        String storedHash = SchematicStore.getHash(name);
+        if (storedHash != null) {
+            return storedHash;
+        }
+        NameEntry known = NAMES.get(name);
+        return known != null ? known.hash() : null;
+    }
+
+    /**
+     * Interns a schematic compiled elsewhere, e.g. while validating an upload, so the first printer using it
+     * does not decode it again.
+     */
+    public static synchronized void put(String hash, CompiledSchematic schematic) {
+        purgeCleared();
+        BY_HASH.put(hash, new HashReference(hash, schematic));
+    }
+
+    /**
+     * Forgets which content a name points to, e.g. after a new upload replaced the file.
+     * Printers already building the old content keep their own reference to it.
+     */
+    public static synchronized void invalidate(String name) {
+        NAMES.remove(name);
+    }
+
+    /**
+     * Drops everything, called when the server stops.
+     */
+    public static synchronized void clear() {
+        NAMES.clear();
+        BY_HASH.clear();
+        purgeCleared();
+    }
+
+    private static CompiledSchematic lookup(String hash) {
+        HashReference reference = BY_HASH.get(hash);
+        return reference != null ? reference.get() : null;
+    }
+
+    private static void purgeCleared() {
+        HashReference cleared;
+        while ((cleared = (HashReference) CLEARED.poll()) != null) {
+            BY_HASH.remove(cleared.hash, cleared);
+        }
+    }
+
+    public static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    /**
+     * Hashes a file without loading it in memory.
+     */
+    public static String hash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required on every JVM
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package fr.thoridan.schematic;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Content-addressed storage of uploaded schematics.
+ * <p>
+ * Every distinct file is stored once under {@code schematics/.store/<sha256>}, and schematic names are
+ * aliases pointing at a hash, persisted in {@code schematics/.store/aliases.properties}. Identical files
+ * uploaded under different names or by different players share the same bytes on disk, and an upload
+ * whose hash is already stored only needs a new alias. Names without an alias fall back to a plain file
+ * in {@code schematics/}, so schematics copied there by hand keep working.
+ * <p>
+ * Placements pin the content they were charged for, persisted in {@code schematics/.store/pins.properties}:
+ * content is only deleted once no name points at it and no pending placement pins it.
+ */
+public final class SchematicStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String ALIASES_FILE = "aliases.properties";
+    private static final String PINS_FILE = "pins.properties";
+
+    private static Properties aliases; // name -> hash, loaded on first use
+    private static Properties pins; // holder -> hash, loaded on first use
+
+    private SchematicStore() {}
+
+    public static Path getStoreFolder() {
+        return SchematicRegistry.getSchematicsFolder().toPath().resolve(".store");
+    }
+
+    /**
+     * Whether this content is already stored.
+     */
+    public static synchronized boolean contains(String hash) {
+        return Files.isRegularFile(getStoreFolder().resolve(hash));
+    }
+
+    /**
+     * The hash a name points to, or null if the name has no alias.
+     */
+    public static synchronized String getHash(String name) {
+        return aliases().getProperty(name);
+    }
+
+    /**
+     * Every name that has an alias.
+     */
+    public static synchronized Set<String> getNames() {
+        return aliases().stringPropertyNames();
+    }
+
+    /**
+     * The file holding the content of this name: the stored content if the name is an alias, the plain file otherwise.
+     */
+    public static synchronized Path resolve(String name) {
+        String hash = getHash(name);
+        if (hash != null) {
+            Path stored = getStoreFolder().resolve(hash);
+            if (Files.isRegularFile(stored)) {
+                return stored;
+            }
+        }
+        return SchematicRegistry.getSchematicsFolder().toPath().resolve(name);
+    }
+
+    /**
+     * Moves a verified file into the store under its hash. If that content is already stored, the file is discarded.
+     */
+    public static synchronized void put(Path file, String hash) throws IOException {
+        Path target = getStoreFolder().resolve(hash);
+        if (Files.isRegularFile(target)) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        moveAtomically(file, target);
+    }
+
+    /**
+     * Points a name at stored content. Content no longer referenced by any name or pin is deleted.
+     */
+    public static synchronized void link(String name, String hash) throws IOException {
+        Properties aliases = aliases();
+        String previous = (String) aliases.setProperty(name, hash);
+        if (hash.equals(previous)) return;
+        save(aliases, ALIASES_FILE);
+
+        if (previous != null) {
+            deleteIfUnused(previous);
+        }
+    }
+
+    /**
+     * Keeps content stored for a pending placement, whatever happens to the names pointing at it.
+     * A holder pins one hash at a time, pinning again replaces its previous pin.
+     * The pins file is written on the {@link SchematicIO} thread.
+     *
+     * @param holder Identifies the placement, e.g. the dimension and position of its printer.
+     */
+    public static synchronized void pin(String holder, String hash) {
+        String previous = (String) pins().setProperty(holder, hash);
+        if (hash.equals(previous)) return;
+        SchematicIO.EXECUTOR.execute(() -> savePins(previous));
+    }
+
+    /**
+     * Releases the pin of a holder; its content is deleted if nothing else references it.
+     */
+    public static synchronized void unpin(String holder) {
+        String previous = (String) pins().remove(holder);
+        if (previous == null) return;
+        SchematicIO.EXECUTOR.execute(() -> savePins(previous));
+    }
+
+    private static synchronized void savePins(String released) {
+        try {
+            save(pins(), PINS_FILE);
+            if (released != null) {
+                deleteIfUnused(released);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not write schematic pins", e);
+        }
+    }
+
+    private static void deleteIfUnused(String hash) throws IOException {
+        if (!aliases().containsValue(hash) && !pins().containsValue(hash)) {
+            Files.deleteIfExists(getStoreFolder().resolve(hash));
+        }
+    }
+
+    /**
+     * Forgets the loaded aliases and pins, called when the server stops.
+     * Queued on the {@link SchematicIO} thread, after the pin changes still waiting to be written.
+     */
+    public static void clear() {
+        SchematicIO.EXECUTOR.execute(() -> {
+            synchronized (SchematicStore.class) {
+                aliases = null;
+                pins = null;
+            }
+        });
+    }
+
+    private static Properties aliases() {
+        if (aliases == null) {
+            aliases = load(ALIASES_FILE);
+        }
+        return aliases;
+    }
+
+    private static Properties pins() {
+        if (pins == null) {
+            pins = load(PINS_FILE);
+        }
+        return pins;
+    }
+
+    private static Properties load(String fileName) {
+        Properties properties = new Properties();
+        Path file = getStoreFolder().resolve(fileName);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                LOGGER.error("Could not read schematic store file {}", fileName, e);
+            }
+        }
+        return properties;
+    }
+
+    private static void save(Properties properties, String fileName) throws IOException {
+        Path file = getStoreFolder().resolve(fileName);
+        Path temp = file.resolveSibling(fileName + ".tmp");
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(temp)) {
+            properties.store(writer, null);
+        }
+        moveAtomically(temp, file);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}